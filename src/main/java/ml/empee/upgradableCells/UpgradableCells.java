@@ -6,6 +6,8 @@ import lombok.val;
 import ml.empee.simplemenu.SimpleMenu;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.config.client.DbClient;
+import ml.empee.upgradableCells.controllers.views.utils.SkullCache;
+import ml.empee.upgradableCells.services.PasteService;
 import ml.empee.upgradableCells.utils.Logger;
 import mr.empee.lightwire.Lightwire;
 import net.milkbowl.vault.economy.Economy;
@@ -58,6 +60,8 @@ public final class UpgradableCells extends JavaPlugin {
 
   public void onDisable() {
     simpleMenu.unregister(this);
+    iocContainer.getBean(SkullCache.class).shutdown();
+    iocContainer.getBean(PasteService.class).saveCheckpoints();
     iocContainer.getBean(DbClient.class).closeConnections();
   }
 }
@@ -7,6 +7,9 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -17,11 +20,16 @@ import java.util.List;
 
 public abstract class AbstractConfig {
 
+  protected final JavaPlugin plugin;
+  protected final String resource;
   protected final File file;
   protected final int version;
   protected YamlConfiguration config;
 
   public AbstractConfig(JavaPlugin plugin, String resource, int version) {
+    this.plugin = plugin;
+    this.resource = resource;
+
     file = new File(plugin.getDataFolder(), resource);
     if (!file.exists()) {
       plugin.saveResource(resource, true);
@@ -34,9 +42,26 @@ public abstract class AbstractConfig {
   private YamlConfiguration loadConfig(File file) {
     YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
     update(config);
+    setDefaults(config);
     return config;
   }
 
+  /**
+   * Missing keys fallback on the bundled file, so that new keys don't break older files
+   */
+  private void setDefaults(YamlConfiguration config) {
+    var defaults = plugin.getResource(resource);
+    if (defaults == null) {
+      return;
+    }
+
+    try (var reader = new InputStreamReader(defaults, StandardCharsets.UTF_8)) {
+      config.setDefaults(YamlConfiguration.loadConfiguration(reader));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @SneakyThrows
   private void update(YamlConfiguration config) {
     int currentVersion = config.getInt("version", 1);
@@ -2,6 +2,7 @@ package ml.empee.upgradableCells.config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -9,6 +10,8 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import ml.empee.upgradableCells.model.CellProject;
+import ml.empee.upgradableCells.model.PasteType;
+import ml.empee.upgradableCells.utils.Logger;
 import mr.empee.lightwire.annotations.Singleton;
 
 /**
@@ -19,9 +22,12 @@ import mr.empee.lightwire.annotations.Singleton;
 public class PluginConfig extends AbstractConfig {
 
   private Location spawnLocation;
+  private List<PasteType> pastePriorities;
 
   public PluginConfig(JavaPlugin plugin) {
     super(plugin, "config.yml", 1);
+
+    pastePriorities = parsePastePriorities();
   }
 
   @Override
@@ -33,6 +39,7 @@ public class PluginConfig extends AbstractConfig {
   public void reload() {
     spawnLocation = null;
     super.reload();
+    pastePriorities = parsePastePriorities();
   }
 
   /**
@@ -73,4 +80,91 @@ public class PluginConfig extends AbstractConfig {
     return config.getInt("world.cell-size", 500);
   }
 
+  public int getFlushInterval() {
+    return Math.max(1, config.getInt("database.flush-interval-ticks", 20));
+  }
+
+  public int getMaxPendingWrites() {
+    return Math.max(1, config.getInt("database.max-pending-writes", 256));
+  }
+
+  public String getJournalMode() {
+    return config.getString("database.journal-mode", "WAL");
+  }
+
+  public String getSynchronous() {
+    return config.getString("database.synchronous", "NORMAL");
+  }
+
+  public long getMmapSize() {
+    return config.getLong("database.mmap-size", 268435456);
+  }
+
+  public long getCacheSize() {
+    return config.getLong("database.cache-size", -16000);
+  }
+
+  public String getTempStore() {
+    return config.getString("database.temp-store", "MEMORY");
+  }
+
+  public double getMinPasteTime() {
+    return config.getDouble("paste.min-ms-per-tick", 1);
+  }
+
+  public double getMaxPasteTime() {
+    return config.getDouble("paste.max-ms-per-tick", 20);
+  }
+
+  public double getMaxPasteMspt() {
+    return config.getDouble("paste.max-mspt", 45);
+  }
+
+  public int getMaxActivePastes() {
+    return Math.max(1, config.getInt("paste.max-active-jobs", 3));
+  }
+
+  /**
+   * @return paste types from the highest to the lowest priority
+   */
+  public List<PasteType> getPastePriorities() {
+    return pastePriorities;
+  }
+
+  /**
+   * Unknown types are skipped, so that a typo doesn't break the paste queue
+   */
+  private List<PasteType> parsePastePriorities() {
+    var priorities = new ArrayList<PasteType>();
+    for (var type : config.getStringList("paste.priority")) {
+      try {
+        priorities.add(PasteType.valueOf(type.toUpperCase(Locale.ROOT)));
+      } catch (IllegalArgumentException e) {
+        Logger.warning("Unknown paste type '%s' inside paste.priority, it will be ignored", type);
+      }
+    }
+
+    if (priorities.isEmpty()) {
+      return List.of(PasteType.CLAIM, PasteType.UPGRADE);
+    }
+
+    return List.copyOf(priorities);
+  }
+
+  public String getPasteEngine() {
+    return config.getString("paste.engine", "AUTO");
+  }
+
+  public boolean isPastingOnlinePlayersFirst() {
+    return config.getBoolean("paste.online-players-first", true);
+  }
+
+  /**
+   * Never smaller than a few menu pages, otherwise the heads of a page would be dropped
+   * before the page is built again with them
+   */
+  public int getSkullCacheSize() {
+    return Math.max(64, config.getInt("menus.skull-cache-size", 512));
+  }
+
 }
@@ -2,6 +2,7 @@ package ml.empee.upgradableCells.config.client;
 
 import lombok.Getter;
 import lombok.SneakyThrows;
+import ml.empee.upgradableCells.config.PluginConfig;
 import ml.empee.upgradableCells.utils.Logger;
 import mr.empee.lightwire.annotations.Singleton;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -10,10 +11,15 @@ import org.jetbrains.annotations.NotNull;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Database client
@@ -36,13 +42,18 @@ public class DbClient {
     }
   };
 
+  private static final Pattern PRAGMA_VALUE = Pattern.compile("-?[A-Za-z0-9_]+");
+
   @Getter
   private final ExecutorService threadPool = Executors.newFixedThreadPool(1, threadFactory);
   private final String dbUrl;
+  private final PluginConfig pluginConfig;
 
+  private final List<Runnable> closeListeners = new ArrayList<>();
   private Connection jdbcConnection;
 
-  public DbClient(JavaPlugin plugin) {
+  public DbClient(JavaPlugin plugin, PluginConfig pluginConfig) {
+    this.pluginConfig = pluginConfig;
     File dbFile = new File(plugin.getDataFolder(), "cells.sqlite");
     this.dbUrl = "jdbc:sqlite:" + dbFile.getAbsolutePath();
 
@@ -54,13 +65,48 @@ public class DbClient {
     if (jdbcConnection == null || jdbcConnection.isClosed()) {
       jdbcConnection = DriverManager.getConnection(dbUrl);
       jdbcConnection.setAutoCommit(true);
+      applyPragmas(jdbcConnection);
     }
 
     return jdbcConnection;
   }
 
+  private void applyPragmas(Connection connection) throws SQLException {
+    var pragmas = new LinkedHashMap<String, Object>();
+    pragmas.put("journal_mode", pluginConfig.getJournalMode());
+    pragmas.put("synchronous", pluginConfig.getSynchronous());
+    pragmas.put("mmap_size", pluginConfig.getMmapSize());
+    pragmas.put("cache_size", pluginConfig.getCacheSize());
+    pragmas.put("temp_store", pluginConfig.getTempStore());
+
+    try (var stm = connection.createStatement()) {
+      var effective = new ArrayList<String>();
+      for (var pragma : pragmas.entrySet()) {
+        var value = pragma.getValue().toString();
+        if (!PRAGMA_VALUE.matcher(value).matches()) {
+          throw new IllegalArgumentException("Invalid value for the pragma " + pragma.getKey() + ": " + value);
+        }
+
+        stm.execute("PRAGMA " + pragma.getKey() + " = " + value);
+        try (var rs = stm.executeQuery("PRAGMA " + pragma.getKey())) {
+          effective.add(pragma.getKey() + "=" + (rs.next() ? rs.getString(1) : "?"));
+        }
+      }
+
+      Logger.info("Database settings: %s", String.join(", ", effective));
+    }
+  }
+
+  /**
+   * Run an action before the connections are closed, while the db thread still accepts operations
+   */
+  public void onClose(Runnable listener) {
+    closeListeners.add(listener);
+  }
+
   @SneakyThrows
   public void closeConnections() {
+    closeListeners.forEach(Runnable::run);
     Logger.info("Shutting down db connections (Forced stop in 60seconds)");
 
     threadPool.shutdown();
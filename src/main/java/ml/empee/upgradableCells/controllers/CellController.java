@@ -17,6 +17,8 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.stream.Collectors;
+
 /**
  * Controller use to manage cell operations
  */
@@ -390,9 +392,12 @@ public class CellController {
     var cell = cellService.findCellById(cellId).orElseThrow();
     cellService.setVisibility(cell.getId(), false);
 
-    for (var member : cell.getMembersAsPlayers()) {
-      cellService.banMember(cell.getId(), member.getUniqueId());
+    var members = cell.getMembersAsPlayers();
+    cellService.banMembers(
+        cell.getId(), members.stream().map(OfflinePlayer::getUniqueId).collect(Collectors.toList())
+    );
 
+    for (var member : members) {
       if (member.isOnline()) {
         member.getPlayer().teleport(pluginConfig.getSpawnLocation());
         Logger.log(member.getPlayer(), langConfig.translate("cell.deleted"));
@@ -3,10 +3,10 @@ package ml.empee.upgradableCells.controllers.commands;
 import co.aikar.commands.BaseCommand;
 import co.aikar.commands.annotation.CommandAlias;
 import co.aikar.commands.annotation.Default;
-import co.aikar.commands.annotation.Subcommand;
+import co.aikar.commands.annotation.Optional;
 import lombok.RequiredArgsConstructor;
-import ml.empee.upgradableCells.controllers.views.ClaimCellMenu;
 import ml.empee.upgradableCells.controllers.views.TopCellsMenu;
+import ml.empee.upgradableCells.services.LeaderboardService;
 import mr.empee.lightwire.annotations.Singleton;
 import org.bukkit.entity.Player;
 
@@ -15,14 +15,14 @@ import org.bukkit.entity.Player;
  */
 
 @Singleton
-@CommandAlias("cell-top")
+@CommandAlias("cell-top|celltop")
 @RequiredArgsConstructor
 public class CellTopCommand extends BaseCommand {
   /**
-   * Cell-Top
+   * Cell-Top, ranked by members if no metric is given
    */
   @Default
-  public void openCellTopMenu(Player sender) {
-    TopCellsMenu.open(sender);
+  public void openCellTopMenu(Player sender, @Optional LeaderboardService.Metric metric) {
+    TopCellsMenu.open(sender, metric == null ? LeaderboardService.Metric.MEMBERS : metric);
   }
 }
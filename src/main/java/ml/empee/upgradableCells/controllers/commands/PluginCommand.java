@@ -6,9 +6,13 @@ import co.aikar.commands.annotation.Subcommand;
 import lombok.RequiredArgsConstructor;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.constants.Permissions;
+import ml.empee.upgradableCells.repositories.memory.CellMemoryRepository;
 import ml.empee.upgradableCells.services.CellService;
+import ml.empee.upgradableCells.services.PasteService;
+import ml.empee.upgradableCells.services.WorldService;
 import ml.empee.upgradableCells.utils.Logger;
 import mr.empee.lightwire.annotations.Singleton;
+import org.bukkit.Location;
 import org.bukkit.command.CommandSender;
 
 /**
@@ -21,6 +25,9 @@ public class PluginCommand extends BaseCommand {
 
   private final LangConfig langConfig;
   private final CellService cellService;
+  private final PasteService pasteService;
+  private final WorldService worldService;
+  private final CellMemoryRepository cellRepository;
 
   @Subcommand("cell reload")
   @CommandPermission(Permissions.ADMIN)
@@ -31,4 +38,61 @@ public class PluginCommand extends BaseCommand {
     Logger.log(sender, "&7The plugin has been reloaded");
   }
 
+  @Subcommand("cell stats")
+  @CommandPermission(Permissions.ADMIN)
+  public void stats(CommandSender sender) {
+    Logger.log(
+        sender,
+        "&7Pending writes: &e%d\n&7Flushes: &e%d &7(%d entities)\n&7Flush latency: &e%d ms &7(avg %d ms)",
+        cellRepository.getPendingWrites(), cellRepository.getFlushes(), cellRepository.getFlushedEntities(),
+        cellRepository.getLastFlushLatency().toMillis(), cellRepository.getAverageFlushLatency().toMillis()
+    );
+
+    for (var index : cellRepository.getIndexes()) {
+      Logger.log(
+          sender, "&7Index %s%s: &e%d &7values, &e%d &7hits, &e%d &7misses",
+          index.getName(), index.isUnique() ? " (unique)" : "", index.size(), index.getHits(), index.getMisses()
+      );
+    }
+  }
+
+  /**
+   * Show the progress of the running pastes
+   */
+  @Subcommand("cell pastes")
+  @CommandPermission(Permissions.ADMIN)
+  public void pastes(CommandSender sender) {
+    var jobs = pasteService.getActiveJobs();
+    Logger.log(sender, "&7Pastes: &e%d &7running, &e%d &7waiting", jobs.size(), pasteService.getWaitingJobs());
+    for (var job : jobs) {
+      Logger.log(
+          sender, "&7%s: &e%.1f%% &7(%.0f blocks/s, %d s left)",
+          job.getName(), job.getProgress() * 100, job.getBlocksPerSecond(), job.getEta().toSeconds()
+      );
+    }
+  }
+
+  /**
+   * Time every paste engine on the schematic of a level, it is pasted in the
+   * cell world on the square around 0, 0 that is never assigned to a cell
+   */
+  @Subcommand("cell benchmark")
+  @CommandPermission(Permissions.ADMIN)
+  public void benchmark(CommandSender sender, int level) {
+    if (level < 0 || level >= cellService.getCellProjects().size()) {
+      Logger.log(sender, "&cThe level %d doesn't exist", level);
+      return;
+    }
+
+    var schematic = cellService.getCellProject(level).getSchematic();
+    var origin = new Location(worldService.getCellWorld(), 0, 50, 0);
+
+    Logger.log(sender, "&7Benchmarking the paste engines on %s...", schematic.getName());
+    pasteService.benchmark(schematic, origin).thenAccept(results -> results.forEach((engine, speed) -> Logger.log(
+        sender, "&7%s: &e%.0f &7blocks/s%s%s", engine.getName(), speed,
+        engine.isAsynchronous() ? " &8(submit time only)" : "",
+        engine == pasteService.getEngine() ? " &a(in use)" : ""
+    )));
+  }
+
 }
@@ -10,6 +10,7 @@ import ml.empee.simplemenu.model.panes.StaticPane;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.controllers.CellController;
 import ml.empee.upgradableCells.controllers.views.utils.GTheme;
+import ml.empee.upgradableCells.controllers.views.utils.SkullCache;
 import ml.empee.upgradableCells.model.Member;
 import ml.empee.upgradableCells.model.events.CellMemberLeaveEvent;
 import ml.empee.upgradableCells.model.events.CellMemberPardonEvent;
@@ -41,6 +42,7 @@ public class BannedPlayersMenu implements Listener {
   private final LangConfig langConfig;
   private final CellController cellController;
   private final CellService cellService;
+  private final SkullCache skullCache;
   private final List<Menu> menus = new CopyOnWriteArrayList<>();
 
   @EventHandler
@@ -124,13 +126,20 @@ public class BannedPlayersMenu implements Listener {
     public void setBannedMembersView() {
       var cell = cellService.findCellById(cellId).orElseThrow();
       var playerRank = cell.getMember(player.getUniqueId()).orElseThrow().getRank();
+      var bannedMembers = cell.getBannedMembers().stream()
+          .filter(m -> m.getRank() == null || playerRank.canManage(m.getRank()))
+          .collect(Collectors.toList());
 
       playersPane.set(
-          cell.getBannedMembers().stream()
-              .filter(m -> m.getRank() == null || playerRank.canManage(m.getRank()))
+          bannedMembers.stream()
               .map(this::playerItem)
               .collect(Collectors.toList())
       );
+
+      skullCache.refreshWhenResolved(
+          bannedMembers.stream().map(Member::getUuid).collect(Collectors.toList()),
+          () -> menus.contains(this), this::refresh
+      );
     }
 
     public void refresh() {
@@ -158,7 +167,7 @@ public class BannedPlayersMenu implements Listener {
     private GItem playerItem(Member member) {
       var target = Bukkit.getOfflinePlayer(member.getUuid());
       var formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-      var item = ItemBuilder.skull()
+      var item = ItemBuilder.from(skullCache.getSkull(member.getUuid()))
           .setName("&e" + target.getName())
           .setLore(
               langConfig.translateBlock(
@@ -166,7 +175,6 @@ public class BannedPlayersMenu implements Listener {
                   member.getBannedSince().format(formatter)
               )
           )
-          .owner(target)
           .build();
 
       return GItem.builder()
@@ -9,11 +9,11 @@ import ml.empee.simplemenu.model.panes.StaticPane;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.controllers.views.utils.GComponenets;
 import ml.empee.upgradableCells.controllers.views.utils.GTheme;
+import ml.empee.upgradableCells.controllers.views.utils.SkullCache;
 import ml.empee.upgradableCells.model.entities.Cell;
 import ml.empee.upgradableCells.model.events.CellMemberLeaveEvent;
 import mr.empee.lightwire.annotations.Instance;
 import mr.empee.lightwire.annotations.Singleton;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -36,6 +36,7 @@ public class SelectCellMenu implements Listener {
   private static SelectCellMenu instance;
   private final LangConfig langConfig;
   private final GComponenets GComponenets;
+  private final SkullCache skullCache;
   private final List<Menu> menus = new CopyOnWriteArrayList<>();
 
   public static CompletableFuture<Long> selectCell(Player player, List<Cell> cells) {
@@ -61,6 +62,7 @@ public class SelectCellMenu implements Listener {
     private final List<Cell> cells;
     private final GTheme gTheme = new GTheme();
     private final CompletableFuture<Long> action;
+    private final ScrollPane cellsPane = ScrollPane.vertical(3, 1, 1);
 
     public Menu(Player viewer, List<Cell> cells, CompletableFuture<Long> action) {
       super(viewer, 3);
@@ -77,16 +79,11 @@ public class SelectCellMenu implements Listener {
     @Override
     public void onOpen() {
       menus.add(this);
-      var cellsPane = ScrollPane.vertical(3, 1, 1);
       var background = new StaticPane(9, 3);
       var content = new StaticPane(9, 3);
       background.fill(GItem.of(gTheme.background()));
 
-      cellsPane.addAll(
-          cells.stream()
-              .map(this::cellItem)
-              .collect(Collectors.toList())
-      );
+      setCellsView();
 
       content.setItem(1, 1, GComponenets.previousButton(cellsPane, this));
       content.setItem(7, 1, GComponenets.nextButton(cellsPane, this));
@@ -101,13 +98,29 @@ public class SelectCellMenu implements Listener {
       menus.remove(this);
     }
 
+    private void setCellsView() {
+      cellsPane.set(
+          cells.stream()
+              .map(this::cellItem)
+              .collect(Collectors.toList())
+      );
+
+      var owners = cells.stream()
+          .map(c -> c.getOwner().orElseThrow())
+          .collect(Collectors.toList());
+
+      skullCache.refreshWhenResolved(owners, () -> menus.contains(this), () -> {
+        setCellsView();
+        update();
+      });
+    }
+
     private GItem cellItem(Cell cell) {
-      OfflinePlayer owner = cell.getOwnerAsPlayer();
+      var owner = cell.getOwnerAsPlayer();
       var cellName = cell.getName() == null ? owner.getName() : cell.getName();
 
-      var item = ItemBuilder.skull()
+      var item = ItemBuilder.from(skullCache.getSkull(owner.getUniqueId()))
           .setName("&e" + cellName)
-          .owner(owner)
           .build();
 
       return GItem.builder()
@@ -8,6 +8,7 @@ import ml.empee.simplemenu.model.panes.StaticPane;
 import ml.empee.upgradableCells.UpgradableCells;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.controllers.views.utils.GTheme;
+import ml.empee.upgradableCells.controllers.views.utils.SkullCache;
 import ml.empee.upgradableCells.model.entities.Cell;
 import ml.empee.upgradableCells.model.events.CellMemberJoinEvent;
 import ml.empee.upgradableCells.model.events.CellMemberLeaveEvent;
@@ -38,6 +39,7 @@ public class SelectMemberMenu implements Listener {
   private static SelectMemberMenu instance;
   private final LangConfig langConfig;
   private final CellService cellService;
+  private final SkullCache skullCache;
   private final List<Menu> menus = new CopyOnWriteArrayList<>();
 
   @EventHandler
@@ -85,9 +87,12 @@ public class SelectMemberMenu implements Listener {
     });
   }
 
-  public SelectMemberMenu(UpgradableCells plugin, LangConfig langConfig, CellService cellService) {
+  public SelectMemberMenu(
+      UpgradableCells plugin, LangConfig langConfig, CellService cellService, SkullCache skullCache
+  ) {
     this.langConfig = langConfig;
     this.cellService = cellService;
+    this.skullCache = skullCache;
 
     plugin.getServer().getPluginManager().registerEvents(this, plugin);
   }
@@ -132,11 +137,7 @@ public class SelectMemberMenu implements Listener {
       var background = new StaticPane(9, 5);
       background.fill(GItem.of(gTheme.background()));
 
-      membersPane.set(
-          players.stream()
-              .map(this::playerItem)
-              .collect(Collectors.toList())
-      );
+      setMembersView();
 
       addPane(1, 1, membersPane);
       addPane(0, 0, background);
@@ -147,16 +148,31 @@ public class SelectMemberMenu implements Listener {
       menus.remove(this);
     }
 
+    private void setMembersView() {
+      membersPane.set(
+          players.stream()
+              .map(this::playerItem)
+              .collect(Collectors.toList())
+      );
+
+      skullCache.refreshWhenResolved(
+          players.stream().map(OfflinePlayer::getUniqueId).collect(Collectors.toList()),
+          () -> menus.contains(this), () -> {
+            setMembersView();
+            update();
+          }
+      );
+    }
+
     private GItem playerItem(OfflinePlayer player) {
       var member = cell.getMember(player.getUniqueId()).orElseThrow();
       var formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-      var item = ItemBuilder.skull()
+      var item = ItemBuilder.from(skullCache.getSkull(player.getUniqueId()))
           .setName("&e" + player.getName())
           .setLore(
               langConfig.translateBlock(
                   "menus.select-player.player-lore",
                   member.getRank().name(), member.getMemberSince().format(formatter)))
-          .owner(player)
           .build();
 
       return GItem.builder()
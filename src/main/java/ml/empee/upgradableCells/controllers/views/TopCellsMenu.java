@@ -10,43 +10,155 @@ import ml.empee.simplemenu.model.panes.StaticPane;
 import ml.empee.upgradableCells.config.LangConfig;
 import ml.empee.upgradableCells.controllers.CellController;
 import ml.empee.upgradableCells.controllers.views.utils.GTheme;
+import ml.empee.upgradableCells.controllers.views.utils.SkullCache;
 import ml.empee.upgradableCells.model.entities.Cell;
-import ml.empee.upgradableCells.services.CellService;
+import ml.empee.upgradableCells.services.LeaderboardService;
+import ml.empee.upgradableCells.services.LeaderboardService.Metric;
 import mr.empee.lightwire.annotations.Instance;
 import mr.empee.lightwire.annotations.Singleton;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
- * Menu to manage banned players
+ * Menu to browse the cell rankings.
+ * <br><br>
+ * Pages are built once and shared between all the viewers until the ranking changes
+ * or the heads that were missing get resolved
  */
 
 @Singleton
 @RequiredArgsConstructor
 public class TopCellsMenu {
 
+  private static final int PAGE_SIZE = 21;
+
   @Instance
   private static TopCellsMenu instance;
   private final LangConfig langConfig;
   private final CellController cellController;
-  private final CellService cellService;
+  private final LeaderboardService leaderboardService;
+  private final SkullCache skullCache;
+  private final Map<Metric, PageCache> pageCaches = new EnumMap<>(Metric.class);
 
   public static void open(Player player) {
-    instance.create(player).open();
+    open(player, Metric.MEMBERS);
+  }
+
+  public static void open(Player player, Metric metric) {
+    instance.create(player, metric).open();
+  }
+
+  private Menu create(Player player, Metric metric) {
+    return new Menu(player, metric);
+  }
+
+  /**
+   * @return the items of the page, built again only if the ranking changed since the last build
+   */
+  private Page getPage(Metric metric, int page) {
+    long version = leaderboardService.getVersion(metric);
+    var cache = pageCaches.get(metric);
+    if (cache == null || cache.version != version) {
+      cache = new PageCache(version);
+      pageCaches.put(metric, cache);
+    }
+
+    return cache.pages.compute(page, (p, old) -> {
+      if (old == null || (!old.complete && skullCache.whenResolved(old.owners).isDone())) {
+        return buildPage(metric, p);
+      }
+
+      return old;
+    });
+  }
+
+  private Page buildPage(Metric metric, int page) {
+    var cells = leaderboardService.findTopCells(metric, page * PAGE_SIZE, PAGE_SIZE);
+    var items = new ArrayList<GItem>(cells.size());
+    for (int i = 0; i < cells.size(); i++) {
+      items.add(cellItem(cells.get(i), metric, page * PAGE_SIZE + i + 1));
+    }
+
+    var owners = cells.stream()
+        .map(c -> c.getOwner().orElseThrow())
+        .collect(Collectors.toList());
+
+    return new Page(items, owners, owners.stream().allMatch(skullCache::isCached));
+  }
+
+  private GItem cellItem(Cell cell, Metric metric, int position) {
+    var owner = cell.getOwnerAsPlayer();
+    var item = ItemBuilder.from(skullCache.getSkull(owner.getUniqueId()))
+        .setName("&e" + owner.getName())
+        .setLore(langConfig.translateBlock(
+            "menus.top-cells.ranked-cell-lore", position, metricName(metric), formatScore(metric, cell)
+        ))
+        .build();
+
+    return GItem.builder()
+        .itemStack(item)
+        .clickHandler(e -> {
+          var player = (Player) e.getWhoClicked();
+          cellController.teleportToCell(cell.getId(), player);
+        }).build();
+  }
+
+  private String metricName(Metric metric) {
+    return langConfig.translate("menus.top-cells.metrics." + metric.name().toLowerCase(Locale.ROOT));
+  }
+
+  private String formatScore(Metric metric, Cell cell) {
+    double score = leaderboardService.getScore(metric, cell);
+    if (metric == Metric.SPENT) {
+      return String.format("%.2f $", score);
+    }
+
+    return String.valueOf((long) score);
   }
 
-  private Menu create(Player player) {
-    return new Menu(player);
+  private static class PageCache {
+    private final long version;
+    private final Map<Integer, Page> pages = new HashMap<>();
+
+    private PageCache(long version) {
+      this.version = version;
+    }
+  }
+
+  /**
+   * Items of a page, built again once its missing heads are resolved
+   */
+  private static class Page {
+    private final List<GItem> items;
+    private final List<UUID> owners;
+    private final boolean complete;
+
+    private Page(List<GItem> items, List<UUID> owners, boolean complete) {
+      this.items = items;
+      this.owners = owners;
+      this.complete = complete;
+    }
   }
 
   private class Menu extends ChestMenu {
     private final ScrollPane cellsPane = ScrollPane.horizontal(7, 3, 3);
     private final GTheme gTheme = new GTheme();
 
-    public Menu(Player viewer) {
+    private final Metric metric;
+    private int page;
+    private boolean open;
+
+    public Menu(Player viewer, Metric metric) {
       super(viewer, 5);
+      this.metric = metric;
     }
 
     @Override
@@ -56,33 +168,78 @@ public class TopCellsMenu {
 
     @Override
     public void onOpen() {
+      open = true;
       var background = new StaticPane(9, 5);
       background.fill(GItem.of(gTheme.background()));
       background.setItem(0, 4, closeItem());
+      background.setItem(3, 4, previousItem());
+      background.setItem(4, 4, metricItem());
+      background.setItem(5, 4, nextItem());
 
-      cellsPane.set(
-          cellService.findCellWithMostMembers(21).stream()
-              .map(this::cellItem)
-              .collect(Collectors.toList())
-      );
+      setCellsView();
 
       addPane(1, 1, cellsPane);
       addPane(0, 0, background);
     }
 
-    private GItem cellItem(Cell cell) {
-      OfflinePlayer owner = cell.getOwnerAsPlayer();
-      var item = ItemBuilder.skull()
-          .setName("&e" + owner.getName())
-          .setLore(langConfig.translateBlock("menus.top-cells.cell-lore", cell.getMembersAsPlayers().size()))
-          .owner(owner)
+    @Override
+    public void onClose() {
+      open = false;
+    }
+
+    private void setCellsView() {
+      var content = getPage(metric, page);
+      cellsPane.set(content.items);
+
+      if (!content.complete) {
+        skullCache.refreshWhenResolved(content.owners, () -> open, this::refresh);
+      }
+    }
+
+    public void refresh() {
+      setCellsView();
+      update();
+    }
+
+    private GItem previousItem() {
+      var item = ItemBuilder.from(XMaterial.ARROW.parseItem())
+          .setName(langConfig.translate("navigation.previous"))
+          .build();
+
+      return GItem.builder()
+          .itemStack(item)
+          .visibilityHandler(() -> page > 0)
+          .clickHandler(e -> {
+            page -= 1;
+            refresh();
+          }).build();
+    }
+
+    private GItem nextItem() {
+      var item = ItemBuilder.from(XMaterial.ARROW.parseItem())
+          .setName(langConfig.translate("navigation.next"))
+          .build();
+
+      return GItem.builder()
+          .itemStack(item)
+          .visibilityHandler(() -> (page + 1) * PAGE_SIZE < leaderboardService.size(metric))
+          .clickHandler(e -> {
+            page += 1;
+            refresh();
+          }).build();
+    }
+
+    private GItem metricItem() {
+      var item = ItemBuilder.from(XMaterial.COMPASS.parseItem())
+          .setName(langConfig.translate("menus.top-cells.items.metric.name"))
+          .setLore(langConfig.translateBlock("menus.top-cells.items.metric.lore", metricName(metric)))
           .build();
 
       return GItem.builder()
           .itemStack(item)
           .clickHandler(e -> {
-            var player = (Player) e.getWhoClicked();
-            cellController.teleportToCell(cell.getId(), player);
+            var metrics = Metric.values();
+            create(player, metrics[(metric.ordinal() + 1) % metrics.length]).open();
           }).build();
     }
 
@@ -0,0 +1,164 @@
+package ml.empee.upgradableCells.controllers.views.utils;
+
+import com.cryptomorin.xseries.XMaterial;
+import com.destroystokyo.paper.profile.PlayerProfile;
+import ml.empee.upgradableCells.config.PluginConfig;
+import ml.empee.upgradableCells.utils.Logger;
+import mr.empee.lightwire.annotations.Singleton;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Player heads shown inside the menus, profiles are resolved off the main thread and
+ * the least recently used heads are dropped once the cache is full.
+ * <br><br>
+ * Accessed only from the main thread
+ */
+
+@Singleton
+public class SkullCache implements Listener {
+
+  private final JavaPlugin plugin;
+  private final ItemStack placeholder = XMaterial.PLAYER_HEAD.parseItem();
+  private final Map<UUID, ItemStack> skulls;
+  private final Map<UUID, CompletableFuture<Void>> resolutions = new HashMap<>();
+  private final ExecutorService resolver = Executors.newSingleThreadExecutor(r -> {
+    var thread = new Thread(r, "skull-resolver");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public SkullCache(JavaPlugin plugin, PluginConfig pluginConfig) {
+    this.plugin = plugin;
+
+    int maxSize = pluginConfig.getSkullCacheSize();
+    this.skulls = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<UUID, ItemStack> eldest) {
+        return size() > maxSize;
+      }
+    };
+
+    Bukkit.getOnlinePlayers().forEach(p -> store(p.getUniqueId(), p.getPlayerProfile()));
+  }
+
+  /**
+   * @return the head of the player, a placeholder head while its profile is being resolved
+   */
+  public ItemStack getSkull(UUID uuid) {
+    var skull = skulls.get(uuid);
+    if (skull != null) {
+      return skull.clone();
+    }
+
+    resolve(uuid);
+    return placeholder.clone();
+  }
+
+  public boolean isCached(UUID uuid) {
+    return skulls.containsKey(uuid);
+  }
+
+  /**
+   * @return a future completed on the main thread once the given heads have been resolved
+   */
+  public CompletableFuture<Void> whenResolved(Collection<UUID> uuids) {
+    var pending = new ArrayList<CompletableFuture<Void>>();
+    for (var uuid : uuids) {
+      var resolution = resolutions.get(uuid);
+      if (resolution != null) {
+        pending.add(resolution);
+      }
+    }
+
+    return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+  }
+
+  /**
+   * Refresh a menu once the given heads have been resolved, nothing happens if they already were
+   *
+   * @param isOpen checked before refreshing, the menu may have been closed meanwhile
+   */
+  public void refreshWhenResolved(Collection<UUID> uuids, BooleanSupplier isOpen, Runnable refresh) {
+    var skulls = whenResolved(uuids);
+    if (skulls.isDone()) {
+      return;
+    }
+
+    skulls.thenRun(() -> {
+      if (isOpen.getAsBoolean()) {
+        refresh.run();
+      }
+    });
+  }
+
+  /**
+   * Stop resolving profiles, the pending lookups are dropped
+   */
+  public void shutdown() {
+    resolver.shutdownNow();
+  }
+
+  private void resolve(UUID uuid) {
+    if (resolutions.containsKey(uuid)) {
+      return;
+    }
+
+    var resolution = new CompletableFuture<Void>();
+    resolutions.put(uuid, resolution);
+
+    resolver.execute(() -> {
+      var profile = Bukkit.createProfile(uuid);
+      try {
+        profile.complete(true);
+      } catch (Exception e) {
+        Logger.debug("Unable to resolve the profile of %s: %s", uuid, e.getMessage());
+      }
+
+      if (!plugin.isEnabled()) {
+        return;
+      }
+
+      Bukkit.getScheduler().runTask(plugin, () -> {
+        //Heads that failed are stored too, otherwise each menu open would look them up again
+        store(uuid, profile);
+        resolutions.remove(uuid);
+        resolution.complete(null);
+      });
+    });
+  }
+
+  private void store(UUID uuid, PlayerProfile profile) {
+    var skull = placeholder.clone();
+    var meta = (SkullMeta) skull.getItemMeta();
+    if (profile.isComplete()) {
+      meta.setPlayerProfile(profile);
+    }
+
+    skull.setItemMeta(meta);
+    skulls.put(uuid, skull);
+  }
+
+  @EventHandler
+  public void onPlayerJoin(PlayerJoinEvent event) {
+    var player = event.getPlayer();
+    store(player.getUniqueId(), player.getPlayerProfile());
+  }
+
+}
@@ -3,15 +3,13 @@ package ml.empee.upgradableCells.model;
 import lombok.Builder;
 import lombok.Getter;
 import ml.empee.upgradableCells.model.entities.Cell;
+import ml.empee.upgradableCells.utils.helpers.PasteJob;
+import ml.empee.upgradableCells.utils.helpers.PastedBlocks;
 import ml.empee.upgradableCells.utils.helpers.Schematic;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.util.Vector;
 
-import java.io.File;
-import java.util.concurrent.CompletableFuture;
-
 /**
  * Represent a cell upgrade
  */
@@ -31,10 +29,19 @@ public class CellProject {
   @Getter
   private CellProject parent;
 
+  @Getter
   private final String schematicId;
   private Schematic schematic;
 
-  private Schematic getSchematic() {
+  /**
+   * Blocks of the schematic that differ from what the parent levels pasted
+   */
+  private int[] changedBlocks;
+
+  /**
+   * @return the schematic of this level, inherited from the parent levels if this level doesn't have one
+   */
+  public Schematic getSchematic() {
     if (schematic != null) {
       return schematic;
     } else {
@@ -46,25 +53,46 @@ public class CellProject {
     return getSchematic().getOrigin();
   }
 
-  public void loadSchematic(File schematicFolder) {
-    schematic = new Schematic(new File(schematicFolder, schematicId));
+  /**
+   * Set the schematic read from {@link #getSchematicId()}, levels with the same file share it
+   */
+  public void setSchematic(Schematic schematic) {
+    this.schematic = schematic;
   }
 
-  public CompletableFuture<Void> paste(Cell cell) {
-    Schematic schematic = parent == null ? getSchematic() : parent.getSchematic();
-    return getSchematic().paste(cell.getOrigin(), l -> {
-      var data = schematic.getBlock(l);
-      return data == null || data.getMaterial() == Material.AIR;
-    });
+  /**
+   * Complete the loading of the schematic, must be called on the main thread
+   * after the parent levels have been loaded
+   *
+   * @param pasted blocks placed by the parent levels, updated with the blocks of this level
+   */
+  public void adaptSchematic(PastedBlocks pasted) {
+    schematic.adaptPalette();
+    changedBlocks = schematic.diff(parent == null ? null : parent.getSchematic(), pasted);
+  }
+
+  /**
+   * Create the job that builds this level inside the cell
+   */
+  public PasteJob paste(Cell cell) {
+    return getSchematic().paste(cell.getOrigin(), changedBlocks);
   }
 
   public boolean hasSchematic() {
     return schematicId != null;
   }
 
+  /**
+   * @return true if the location is part of the structure of this level, inherited from
+   * the parent levels if this level doesn't have a schematic
+   */
   public boolean isCellBlock(Cell ownedCell, Location location) {
-    var data = getSchematic().getBlock(location.toVector().subtract(ownedCell.getOrigin().toVector()));
-    return data != null && data.getMaterial() != Material.AIR;
+    var origin = ownedCell.getOrigin();
+    return getSchematic().isSolid(
+        location.getBlockX() - origin.getBlockX(),
+        location.getBlockY() - origin.getBlockY(),
+        location.getBlockZ() - origin.getBlockZ()
+    );
   }
 
   /**
@@ -56,6 +56,19 @@ public class Member {
     return Instant.ofEpochMilli(bannedSince).atZone(ZoneId.systemDefault()).toLocalDateTime();
   }
 
+  /**
+   * @return epoch millis of when the member joined, null if unknown
+   */
+  @Nullable
+  public Long getMemberSinceMillis() {
+    return memberSince;
+  }
+
+  @Nullable
+  public Long getBannedSinceMillis() {
+    return bannedSince;
+  }
+
   public boolean isBanned() {
     return bannedSince != null;
   }
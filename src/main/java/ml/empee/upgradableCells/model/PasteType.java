@@ -0,0 +1,10 @@
+package ml.empee.upgradableCells.model;
+
+/**
+ * Reason of a cell paste, used to prioritize the paste queue
+ */
+
+public enum PasteType {
+  CLAIM,
+  UPGRADE
+}
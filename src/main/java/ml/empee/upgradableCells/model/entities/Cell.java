@@ -1,16 +1,19 @@
 package ml.empee.upgradableCells.model.entities;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Value;
 import lombok.With;
 import ml.empee.upgradableCells.model.Member;
+import ml.empee.upgradableCells.utils.helpers.PersistentMap;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -20,7 +23,6 @@ import java.util.stream.Collectors;
 
 @With
 @Value
-@Builder
 public class Cell implements AnonymousEntity {
 
   Long id;
@@ -28,11 +30,14 @@ public class Cell implements AnonymousEntity {
   String name;
   String description;
 
-  @Builder.Default
-  Set<Member> members = new HashSet<>();
+  /**
+   * Persistent maps, every update shares the untouched members with the previous cell
+   */
+  @With(AccessLevel.NONE)
+  PersistentMap<UUID, Member> members;
 
-  @Builder.Default
-  Set<Member> bannedMembers = new HashSet<>();
+  @With(AccessLevel.NONE)
+  PersistentMap<UUID, Member> bannedMembers;
 
   Integer level;
 
@@ -41,6 +46,49 @@ public class Cell implements AnonymousEntity {
   boolean updating;
   boolean publicVisible;
 
+  /**
+   * Owner derived from the members, computed again only when the members change
+   */
+  @With(AccessLevel.NONE)
+  UUID owner;
+
+  /**
+   * The owner isn't part of the builder, it is always derived from the members
+   */
+  @Builder
+  private Cell(
+      Long id, String name, String description,
+      PersistentMap<UUID, Member> members, PersistentMap<UUID, Member> bannedMembers,
+      Integer level, Location origin, boolean updating, boolean publicVisible
+  ) {
+    this(
+        id, name, description,
+        members == null ? PersistentMap.empty() : members,
+        bannedMembers == null ? PersistentMap.empty() : bannedMembers,
+        level, origin, updating, publicVisible, null
+    );
+  }
+
+  /**
+   * @param owner owner of the given members, computed from them when null
+   */
+  private Cell(
+      Long id, String name, String description,
+      PersistentMap<UUID, Member> members, PersistentMap<UUID, Member> bannedMembers,
+      Integer level, Location origin, boolean updating, boolean publicVisible, UUID owner
+  ) {
+    this.id = id;
+    this.name = name;
+    this.description = description;
+    this.members = members;
+    this.bannedMembers = bannedMembers;
+    this.level = level;
+    this.origin = origin;
+    this.updating = updating;
+    this.publicVisible = publicVisible;
+    this.owner = owner != null ? owner : findOwner(members);
+  }
+
   public static Cell of(UUID owner, Integer level, Location origin) {
     Cell cell = Cell.builder()
         .level(level)
@@ -57,70 +105,80 @@ public class Cell implements AnonymousEntity {
   }
 
   public Set<Member> getMembers() {
-    return Collections.unmodifiableSet(members);
+    return new MemberSet(members);
   }
 
   public Set<Member> getBannedMembers() {
-    return Collections.unmodifiableSet(bannedMembers);
+    return new MemberSet(bannedMembers);
   }
 
   public List<Player> getOnlineMembers() {
-    return members.stream()
-        .map(m -> Bukkit.getPlayer(m.getUuid()))
+    return members.keyStream()
+        .map(Bukkit::getPlayer)
         .filter(Objects::nonNull)
         .collect(Collectors.toList());
   }
 
   public List<OfflinePlayer> getMembersAsPlayers() {
-    return members.stream()
-        .map(m -> Bukkit.getOfflinePlayer(m.getUuid()))
+    return members.keyStream()
+        .map(Bukkit::getOfflinePlayer)
         .collect(Collectors.toList());
   }
 
   public Optional<Member> getBannedMember(UUID uuid) {
-    return bannedMembers.stream()
-        .filter(m -> m.getUuid().equals(uuid))
-        .findFirst();
+    return Optional.ofNullable(bannedMembers.get(uuid));
   }
 
   public Optional<Member> getMember(UUID uuid) {
-    return members.stream()
-        .filter(m -> m.getUuid().equals(uuid))
-        .findFirst();
+    return Optional.ofNullable(members.get(uuid));
+  }
+
+  public Cell withMembers(Collection<Member> members) {
+    return withMemberMaps(toMap(members), bannedMembers);
+  }
+
+  public Cell withBannedMembers(Collection<Member> bannedMembers) {
+    return withMemberMaps(members, toMap(bannedMembers));
   }
 
   public Cell withoutBannedMember(UUID uuid) {
-    return withBannedMembers(
-        bannedMembers.stream()
-            .filter(m -> !m.getUuid().equals(uuid))
-            .collect(Collectors.toSet())
-    );
+    return withMemberMaps(members, bannedMembers.minus(uuid));
   }
 
   public Cell withoutMember(UUID uuid) {
-    return withMembers(
-        members.stream()
-            .filter(m -> !m.getUuid().equals(uuid))
-            .collect(Collectors.toSet())
-    );
+    return withMemberMaps(members.minus(uuid), bannedMembers);
   }
 
   public Cell withBannedMember(Member member) {
-    var bannedMembers = new HashSet<>(this.bannedMembers);
+    return withMemberMaps(members, bannedMembers.plus(member.getUuid(), member));
+  }
 
-    bannedMembers.removeIf(m -> m.getUuid().equals(member.getUuid()));
-    bannedMembers.add(member);
+  public Cell withMember(Member member) {
+    return withMemberMaps(members.plus(member.getUuid(), member), bannedMembers);
+  }
 
-    return withBannedMembers(bannedMembers);
+  private Cell withMemberMaps(PersistentMap<UUID, Member> members, PersistentMap<UUID, Member> bannedMembers) {
+    if (members == this.members && bannedMembers == this.bannedMembers) {
+      return this;
+    }
+
+    return new Cell(id, name, description, members, bannedMembers, level, origin, updating, publicVisible, null);
   }
 
-  public Cell withMember(Member member) {
-    var members = new HashSet<>(this.members);
+  private static UUID findOwner(PersistentMap<UUID, Member> members) {
+    return members.valueStream()
+        .filter(m -> m.getRank() == Member.Rank.OWNER)
+        .findFirst().map(Member::getUuid)
+        .orElse(null);
+  }
 
-    members.removeIf(m -> m.getUuid().equals(member.getUuid()));
-    members.add(member);
+  private static PersistentMap<UUID, Member> toMap(Collection<Member> members) {
+    PersistentMap<UUID, Member> map = PersistentMap.empty();
+    for (var member : members) {
+      map = map.plus(member.getUuid(), member);
+    }
 
-    return withMembers(members);
+    return map;
   }
 
   @Override
@@ -133,13 +191,37 @@ public class Cell implements AnonymousEntity {
   }
 
   public Optional<UUID> getOwner() {
-    return members.stream()
-        .filter(m -> m.getRank().equals(Member.Rank.OWNER))
-        .findFirst().map(Member::getUuid);
+    return Optional.ofNullable(owner);
   }
 
   public OfflinePlayer getOwnerAsPlayer() {
     return Bukkit.getOfflinePlayer(getOwner().orElseThrow());
   }
 
+  /**
+   * Read-only set view over the persistent members map
+   */
+  private static class MemberSet extends AbstractSet<Member> {
+    private final PersistentMap<UUID, Member> members;
+
+    private MemberSet(PersistentMap<UUID, Member> members) {
+      this.members = members;
+    }
+
+    @Override
+    public Iterator<Member> iterator() {
+      return members.values().iterator();
+    }
+
+    @Override
+    public int size() {
+      return members.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof Member && o.equals(members.get(((Member) o).getUuid()));
+    }
+  }
+
 }
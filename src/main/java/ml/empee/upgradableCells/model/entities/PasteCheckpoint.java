@@ -0,0 +1,36 @@
+package ml.empee.upgradableCells.model.entities;
+
+import lombok.Value;
+import lombok.With;
+import ml.empee.upgradableCells.model.PasteType;
+
+/**
+ * Progress of a cell paste, used to resume it after a restart
+ */
+
+@With
+@Value
+public class PasteCheckpoint implements Entity<Long> {
+
+  /**
+   * Id of the cell being pasted
+   */
+  Long id;
+  Integer level;
+  PasteType type;
+
+  /**
+   * Name of the engine that pasted the blocks, the cursor is meaningful only for the same engine
+   */
+  String engine;
+
+  /**
+   * Blocks of the job already written to disk
+   */
+  Integer cursor;
+
+  public static PasteCheckpoint of(Cell cell, PasteType type) {
+    return new PasteCheckpoint(cell.getId(), cell.getLevel(), type, null, 0);
+  }
+
+}
@@ -0,0 +1,26 @@
+package ml.empee.upgradableCells.model.events;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ml.empee.upgradableCells.model.entities.Cell;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Event fired when a cell is made public or private
+ */
+
+@Getter
+@RequiredArgsConstructor
+public class CellVisibilityChangeEvent extends Event {
+
+  @Getter
+  private static final HandlerList handlerList = new HandlerList();
+
+  private final Cell cell;
+
+  @Override
+  public HandlerList getHandlers() {
+    return handlerList;
+  }
+}
@@ -1,14 +1,19 @@
 package ml.empee.upgradableCells.repositories;
 
+import lombok.Getter;
 import lombok.SneakyThrows;
 import ml.empee.upgradableCells.config.client.DbClient;
 import ml.empee.upgradableCells.model.entities.Entity;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -18,9 +23,12 @@ import java.util.stream.Collectors;
 
 public abstract class AbstractRepository<T extends Entity<K>, K> {
 
+  @Getter
   protected final DbClient client;
   protected final String table;
 
+  private final Map<String, PreparedStatement> statements = new HashMap<>();
+
   protected AbstractRepository(DbClient client, String table) {
     this.client = client;
     this.table = table;
@@ -65,29 +73,156 @@ public abstract class AbstractRepository<T extends Entity<K>, K> {
    * Save an entity
    */
   public CompletableFuture<Void> save(T entity) {
-    return CompletableFuture.runAsync(() -> {
-      var values = schema().stream().map(s -> "?").collect(Collectors.toList());
-      var query = "INSERT OR REPLACE INTO " + table + " VALUES (" + String.join(", ", values) + ");";
+    return saveAll(List.of(entity));
+  }
 
-      try (var stm = client.getJdbcConnection().prepareStatement(query)) {
-        prepareStatement(stm, entity);
-        stm.executeUpdate();
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
-    }, client.getThreadPool());
+  /**
+   * Save many entities in a single transaction
+   */
+  public CompletableFuture<Void> saveAll(Collection<T> entities) {
+    return writeAll(entities, List.of());
   }
 
   public CompletableFuture<Void> delete(K id) {
-    return CompletableFuture.runAsync(() -> {
-      var query = "DELETE FROM " + table + " WHERE id = ?;";
-      try (var stm = client.getJdbcConnection().prepareStatement(query)) {
-        stm.setObject(1, id);
-        stm.executeUpdate();
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
+    return deleteAll(List.of(id));
+  }
+
+  /**
+   * Delete many entities in a single transaction
+   */
+  public CompletableFuture<Void> deleteAll(Collection<K> ids) {
+    return writeAll(List.of(), ids);
+  }
+
+  /**
+   * Save and delete many entities in a single transaction, either all of them are written or none
+   */
+  public CompletableFuture<Void> writeAll(Collection<T> saves, Collection<K> deletes) {
+    return CompletableFuture.runAsync(() -> inTransaction(() -> {
+      if (!saves.isEmpty()) {
+        executeSaves(saves);
       }
-    }, client.getThreadPool());
+
+      if (!deletes.isEmpty()) {
+        executeDeletes(deletes);
+      }
+    }), client.getThreadPool());
+  }
+
+  private void executeSaves(Collection<T> entities) throws SQLException {
+    var stm = prepareCached(getSaveQuery());
+    stm.clearBatch();
+    for (T entity : entities) {
+      prepareStatement(stm, entity);
+      stm.addBatch();
+    }
+
+    stm.executeBatch();
+    for (T entity : entities) {
+      afterSave(entity);
+    }
+  }
+
+  private void executeDeletes(Collection<K> ids) throws SQLException {
+    var stm = prepareCached("DELETE FROM " + table + " WHERE id = ?;");
+    stm.clearBatch();
+    for (K id : ids) {
+      stm.setObject(1, id);
+      stm.addBatch();
+    }
+
+    stm.executeBatch();
+    for (K id : ids) {
+      afterDelete(id);
+    }
+  }
+
+  /**
+   * Called inside the save transaction to persist data stored outside the entity table
+   */
+  protected void afterSave(T entity) throws SQLException {
+  }
+
+  /**
+   * Called inside the delete transaction to remove data stored outside the entity table
+   */
+  protected void afterDelete(K id) throws SQLException {
+  }
+
+  /**
+   * Called once a transaction has been committed
+   */
+  protected void afterCommit() {
+  }
+
+  /**
+   * Called once a transaction has been rolled back, nothing it wrote reached the database
+   */
+  protected void afterRollback() {
+  }
+
+  private String getSaveQuery() {
+    var columns = schema().stream().map(c -> c.split(" ", 2)[0]).collect(Collectors.toList());
+    var values = columns.stream().map(c -> "?").collect(Collectors.toList());
+
+    return "INSERT OR REPLACE INTO " + table + " (" + String.join(", ", columns) + ") "
+        + "VALUES (" + String.join(", ", values) + ");";
+  }
+
+  /**
+   * Must be called from the db thread, the statement is reused until the connection changes
+   */
+  protected PreparedStatement prepareCached(String query) throws SQLException {
+    var connection = client.getJdbcConnection();
+    var statement = statements.get(query);
+    if (statement == null || statement.isClosed() || statement.getConnection() != connection) {
+      statement = connection.prepareStatement(query);
+      statements.put(query, statement);
+    }
+
+    return statement;
+  }
+
+  /**
+   * Run the operation in a single transaction, rolled back if it fails
+   */
+  protected void inTransaction(SqlOperation operation) {
+    var connection = client.getJdbcConnection();
+    try {
+      connection.setAutoCommit(false);
+      operation.run();
+      connection.commit();
+    } catch (SQLException e) {
+      rollback(connection);
+      afterRollback();
+      throw new RuntimeException(e);
+    } catch (RuntimeException e) {
+      rollback(connection);
+      afterRollback();
+      throw e;
+    } finally {
+      restoreAutoCommit(connection);
+    }
+
+    afterCommit();
+  }
+
+  @SneakyThrows
+  private static void rollback(Connection connection) {
+    connection.rollback();
+  }
+
+  @SneakyThrows
+  private static void restoreAutoCommit(Connection connection) {
+    connection.setAutoCommit(true);
+  }
+
+  /**
+   * Database operation executed inside a transaction
+   */
+  @FunctionalInterface
+  protected interface SqlOperation {
+    void run() throws SQLException;
   }
 
   protected abstract void prepareStatement(PreparedStatement stm, T data) throws SQLException;
@@ -3,24 +3,54 @@ package ml.empee.upgradableCells.repositories;
 import com.google.gson.reflect.TypeToken;
 import lombok.SneakyThrows;
 import ml.empee.upgradableCells.config.client.DbClient;
+import ml.empee.upgradableCells.model.Member;
 import ml.empee.upgradableCells.model.entities.Cell;
+import ml.empee.upgradableCells.utils.Logger;
+import ml.empee.upgradableCells.utils.MemberCodec;
 import ml.empee.upgradableCells.utils.ObjectConverter;
 import mr.empee.lightwire.annotations.Singleton;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Persist a cell data
+ * Persist a cell data, members are stored in their own table and only the changed rows are written
  */
 
 @Singleton
 public class CellRepository extends AbstractRepository<Cell, Long> {
 
+  /**
+   * 1: members moved to their own table, 2: members stored with {@link MemberCodec}
+   */
+  private static final int SCHEMA_VERSION = 2;
+
+  /**
+   * Members of each cell as they are stored in the database, accessed only from the db thread
+   */
+  private final Map<Long, MemberRows> storedMembers = new HashMap<>();
+
+  /**
+   * Members written by the open transaction, moved to the stored ones only once it commits.
+   * A null value means that the cell has been deleted
+   */
+  private final Map<Long, MemberRows> stagedMembers = new HashMap<>();
+
   public CellRepository(DbClient client) {
     super(client, "cells");
+
+    migrate();
   }
 
   @Override
@@ -29,8 +59,6 @@ public class CellRepository extends AbstractRepository<Cell, Long> {
         "id INTEGER PRIMARY KEY",
         "name TEXT",
         "description TEXT",
-        "members TEXT DEFAULT \"\" NOT NULL",
-        "banned_members TEXT DEFAULT \"\" NOT NULL",
         "level INTEGER NOT NULL",
         "origin TEXT NOT NULL",
         "updating INTEGER DEFAULT 0 NOT NULL",
@@ -38,17 +66,99 @@ public class CellRepository extends AbstractRepository<Cell, Long> {
     );
   }
 
+  @SneakyThrows
+  private void createMembersTable() {
+    try (var stm = client.getJdbcConnection().createStatement()) {
+      stm.executeUpdate(
+          "CREATE TABLE IF NOT EXISTS cell_members ("
+              + "cell_id INTEGER NOT NULL, "
+              + "uuid BLOB NOT NULL, "
+              + "banned INTEGER NOT NULL, "
+              + "data BLOB NOT NULL, "
+              + "PRIMARY KEY (cell_id, uuid, banned)"
+              + ");"
+      );
+    }
+  }
+
+  /**
+   * Bring old databases to the current member storage, members stored as json inside the
+   * cells table are moved to the members table with the binary format
+   */
+  @SneakyThrows
+  private void migrate() {
+    var connection = client.getJdbcConnection();
+    int version;
+    try (var stm = connection.createStatement(); var rs = stm.executeQuery("PRAGMA user_version")) {
+      version = rs.next() ? rs.getInt(1) : 0;
+    }
+
+    if (version >= SCHEMA_VERSION) {
+      createMembersTable();
+      return;
+    }
+
+    inTransaction(() -> {
+      createMembersTable();
+
+      if (hasColumn(table, "members")) {
+        Logger.info("Migrating cell members to their own table...");
+        var query = "SELECT id, members, banned_members FROM cells WHERE members != '' OR banned_members != ''";
+        try (var stm = connection.createStatement(); var rs = stm.executeQuery(query)) {
+          while (rs.next()) {
+            long cellId = rs.getLong("id");
+            for (var member : parseLegacyMembers(rs.getString("members"))) {
+              insertMember(cellId, member, false);
+            }
+
+            for (var member : parseLegacyMembers(rs.getString("banned_members"))) {
+              insertMember(cellId, member, true);
+            }
+          }
+        }
+
+        try (var stm = connection.createStatement()) {
+          stm.executeUpdate("UPDATE cells SET members = '', banned_members = ''");
+        }
+      }
+
+      try (var stm = connection.createStatement()) {
+        stm.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION);
+      }
+    });
+  }
+
+  private boolean hasColumn(String table, String column) throws SQLException {
+    var query = "PRAGMA table_info(" + table + ")";
+    try (var stm = client.getJdbcConnection().createStatement(); var rs = stm.executeQuery(query)) {
+      while (rs.next()) {
+        if (column.equals(rs.getString("name"))) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static Set<Member> parseLegacyMembers(String json) {
+    if (json == null || json.isBlank()) {
+      return Set.of();
+    }
+
+    Set<Member> members = ObjectConverter.parse(json, new TypeToken<>() {});
+    return members == null ? Set.of() : members;
+  }
+
   @Override
   protected void prepareStatement(PreparedStatement stm, Cell data) throws SQLException {
     stm.setLong(1, data.getId());
     stm.setString(2, data.getName());
     stm.setString(3, data.getDescription());
-    stm.setString(4, ObjectConverter.parse(data.getMembers()));
-    stm.setString(5, ObjectConverter.parse(data.getBannedMembers()));
-    stm.setInt(6, data.getLevel());
-    stm.setString(7, ObjectConverter.parseLocation(data.getOrigin()));
-    stm.setInt(8, data.isUpdating() ? 1 : 0);
-    stm.setInt(9, data.isPublicVisible() ? 1 : 0);
+    stm.setInt(4, data.getLevel());
+    stm.setString(5, ObjectConverter.parseLocation(data.getOrigin()));
+    stm.setInt(6, data.isUpdating() ? 1 : 0);
+    stm.setInt(7, data.isPublicVisible() ? 1 : 0);
   }
 
   @SneakyThrows
@@ -57,8 +167,6 @@ public class CellRepository extends AbstractRepository<Cell, Long> {
         .id(rs.getLong("id"))
         .name(rs.getString("name"))
         .description(rs.getString("description"))
-        .members(ObjectConverter.parse(rs.getString("members"), new TypeToken<>() {}))
-        .bannedMembers(ObjectConverter.parse(rs.getString("banned_members"), new TypeToken<>() {}))
         .origin(ObjectConverter.parseLocation(rs.getString("origin")))
         .level(rs.getInt("level"))
         .updating(rs.getInt("updating") == 1)
@@ -66,4 +174,139 @@ public class CellRepository extends AbstractRepository<Cell, Long> {
         .build();
   }
 
+  /**
+   * Find all cells together with their members
+   */
+  @Override
+  public CompletableFuture<List<Cell>> findAll() {
+    return super.findAll().thenApplyAsync(cells -> {
+      try {
+        loadMembers();
+      } catch (SQLException e) {
+        throw new RuntimeException(e);
+      }
+
+      return cells.stream()
+          .map(c -> {
+            var rows = storedMembers.getOrDefault(c.getId(), new MemberRows());
+            return c.withMembers(rows.members.values())
+                .withBannedMembers(rows.banned.values());
+          }).collect(Collectors.toList());
+    }, client.getThreadPool());
+  }
+
+  private void loadMembers() throws SQLException {
+    storedMembers.clear();
+    try (var stm = client.getJdbcConnection().createStatement()) {
+      var rs = stm.executeQuery("SELECT * FROM cell_members");
+      while (rs.next()) {
+        var rows = storedMembers.computeIfAbsent(rs.getLong("cell_id"), k -> new MemberRows());
+        var member = parseMember(rs);
+        if (rs.getInt("banned") == 1) {
+          rows.banned.put(member.getUuid(), member);
+        } else {
+          rows.members.put(member.getUuid(), member);
+        }
+      }
+    }
+  }
+
+  private static Member parseMember(ResultSet rs) throws SQLException {
+    var uuid = MemberCodec.decodeUuid(rs.getBytes("uuid"));
+    return MemberCodec.decode(uuid, rs.getBytes("data"));
+  }
+
+  /**
+   * Write only the member rows that changed since the last save of the cell
+   */
+  @Override
+  protected void afterSave(Cell cell) throws SQLException {
+    var stored = stagedMembers.containsKey(cell.getId())
+        ? stagedMembers.get(cell.getId())
+        : storedMembers.get(cell.getId());
+    if (stored == null) {
+      stored = new MemberRows();
+    }
+
+    var written = new MemberRows();
+    written.members = toMap(cell.getMembers());
+    written.banned = toMap(cell.getBannedMembers());
+
+    updateMembers(cell.getId(), stored.members, written.members, false);
+    updateMembers(cell.getId(), stored.banned, written.banned, true);
+
+    stagedMembers.put(cell.getId(), written);
+  }
+
+  private static Map<UUID, Member> toMap(Collection<Member> members) {
+    return members.stream().collect(Collectors.toMap(Member::getUuid, Function.identity(), (a, b) -> b));
+  }
+
+  private void updateMembers(
+      Long cellId, Map<UUID, Member> stored, Map<UUID, Member> members, boolean banned
+  ) throws SQLException {
+    for (var member : members.values()) {
+      if (!Objects.equals(stored.get(member.getUuid()), member)) {
+        insertMember(cellId, member, banned);
+      }
+    }
+
+    for (var uuid : stored.keySet()) {
+      if (!members.containsKey(uuid)) {
+        var stm = prepareCached("DELETE FROM cell_members WHERE cell_id = ? AND uuid = ? AND banned = ?;");
+        stm.setLong(1, cellId);
+        stm.setBytes(2, MemberCodec.encodeUuid(uuid));
+        stm.setInt(3, banned ? 1 : 0);
+        stm.executeUpdate();
+      }
+    }
+  }
+
+  private void insertMember(Long cellId, Member member, boolean banned) throws SQLException {
+    var stm = prepareCached(
+        "INSERT OR REPLACE INTO cell_members (cell_id, uuid, banned, data) VALUES (?, ?, ?, ?);"
+    );
+
+    stm.setLong(1, cellId);
+    stm.setBytes(2, MemberCodec.encodeUuid(member.getUuid()));
+    stm.setInt(3, banned ? 1 : 0);
+    stm.setBytes(4, MemberCodec.encode(member));
+    stm.executeUpdate();
+  }
+
+  @Override
+  protected void afterDelete(Long id) throws SQLException {
+    var stm = prepareCached("DELETE FROM cell_members WHERE cell_id = ?;");
+    stm.setLong(1, id);
+    stm.executeUpdate();
+
+    stagedMembers.put(id, null);
+  }
+
+  @Override
+  protected void afterCommit() {
+    stagedMembers.forEach((id, rows) -> {
+      if (rows == null) {
+        storedMembers.remove(id);
+      } else {
+        storedMembers.put(id, rows);
+      }
+    });
+
+    stagedMembers.clear();
+  }
+
+  /**
+   * The stored members are left untouched, the next save writes again the rows that were lost
+   */
+  @Override
+  protected void afterRollback() {
+    stagedMembers.clear();
+  }
+
+  private static class MemberRows {
+    private Map<UUID, Member> members = new HashMap<>();
+    private Map<UUID, Member> banned = new HashMap<>();
+  }
+
 }
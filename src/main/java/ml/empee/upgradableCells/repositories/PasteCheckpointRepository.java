@@ -0,0 +1,55 @@
+package ml.empee.upgradableCells.repositories;
+
+import ml.empee.upgradableCells.config.client.DbClient;
+import ml.empee.upgradableCells.model.entities.PasteCheckpoint;
+import ml.empee.upgradableCells.model.PasteType;
+import mr.empee.lightwire.annotations.Singleton;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Save the progress of the cell pastes
+ */
+
+@Singleton
+public class PasteCheckpointRepository extends AbstractRepository<PasteCheckpoint, Long> {
+
+  public PasteCheckpointRepository(DbClient client) {
+    super(client, "paste_checkpoints");
+  }
+
+  @Override
+  protected List<String> schema() {
+    return List.of(
+        "id INTEGER PRIMARY KEY",
+        "level INTEGER NOT NULL",
+        "type TEXT NOT NULL",
+        "engine TEXT",
+        "cursor INTEGER DEFAULT 0 NOT NULL"
+    );
+  }
+
+  @Override
+  protected void prepareStatement(PreparedStatement stm, PasteCheckpoint data) throws SQLException {
+    stm.setLong(1, data.getId());
+    stm.setInt(2, data.getLevel());
+    stm.setString(3, data.getType().name());
+    stm.setString(4, data.getEngine());
+    stm.setInt(5, data.getCursor());
+  }
+
+  @Override
+  protected PasteCheckpoint parse(ResultSet rs) throws SQLException {
+    return new PasteCheckpoint(
+        rs.getLong("id"),
+        rs.getInt("level"),
+        PasteType.valueOf(rs.getString("type")),
+        rs.getString("engine"),
+        rs.getInt("cursor")
+    );
+  }
+
+}
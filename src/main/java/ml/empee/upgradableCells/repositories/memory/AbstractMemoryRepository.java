@@ -1,30 +1,64 @@
 package ml.empee.upgradableCells.repositories.memory;
 
 import lombok.Getter;
+import ml.empee.upgradableCells.config.PluginConfig;
 import ml.empee.upgradableCells.model.entities.AnonymousEntity;
 import ml.empee.upgradableCells.model.entities.Entity;
 import ml.empee.upgradableCells.repositories.AbstractRepository;
+import ml.empee.upgradableCells.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
- * FULL In-Memory repository with async persistence
+ * FULL In-Memory repository with async persistence.
+ * <br><br>
+ * Saved and deleted entities are written behind: only the latest change of each entity is kept
+ * and flushed in a single transaction periodically or once too many are pending.
+ * <br><br>
+ * Subclasses can declare secondary indexes that are kept in sync with the cache
  */
 
 public abstract class AbstractMemoryRepository<R extends AbstractRepository<T, K>, T extends Entity<K>, K> {
 
   private final TreeMap<K, T> cache = new TreeMap<>();
+  /**
+   * Latest change of each entity, a null value is a deletion
+   */
+  private final Map<K, T> pendingWrites = new LinkedHashMap<>();
+  private final List<Index<T, K, ?>> indexes = new ArrayList<>();
+  private final int maxPendingWrites;
 
   @Getter
   private final R backend;
 
-  protected AbstractMemoryRepository(R repository) {
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong flushedEntities = new AtomicLong();
+  private volatile long lastFlushLatency;
+  private volatile long totalFlushLatency;
+
+  protected AbstractMemoryRepository(R repository, JavaPlugin plugin, PluginConfig pluginConfig) {
     this.backend = repository;
+    this.maxPendingWrites = pluginConfig.getMaxPendingWrites();
 
     loadFromRepository();
+
+    int interval = pluginConfig.getFlushInterval();
+    Bukkit.getScheduler().runTaskTimer(plugin, this::flush, interval, interval);
+    repository.getClient().onClose(this::flush);
   }
 
   protected void loadFromRepository() {
@@ -33,9 +67,63 @@ public abstract class AbstractMemoryRepository<R extends AbstractRepository<T, K
     );
   }
 
+  /**
+   * Reload the entities from the database, pending writes are flushed first
+   */
   public void reload() {
+    flush().join();
     cache.clear();
     loadFromRepository();
+    indexes.forEach(this::rebuild);
+  }
+
+  /**
+   * Declare an index where each value belongs to at most one entity
+   */
+  protected <V> Index<T, K, V> addUniqueIndex(String name, Function<T, V> extractor) {
+    return addIndex(new Index<>(name, true, e -> {
+      var value = extractor.apply(e);
+      return value == null ? Set.of() : Set.of(value);
+    }));
+  }
+
+  /**
+   * Declare an index where each entity can have many values, shared with other entities
+   */
+  protected <V> Index<T, K, V> addIndex(String name, Function<T, Collection<V>> extractor) {
+    return addIndex(new Index<>(name, false, extractor));
+  }
+
+  private <V> Index<T, K, V> addIndex(Index<T, K, V> index) {
+    indexes.add(index);
+    rebuild(index);
+    return index;
+  }
+
+  private void rebuild(Index<T, K, ?> index) {
+    index.clear();
+    cache.values().forEach(e -> index.update(null, e));
+  }
+
+  public List<Index<T, K, ?>> getIndexes() {
+    return Collections.unmodifiableList(indexes);
+  }
+
+  protected <V> Optional<T> findUnique(Index<T, K, V> index, V value) {
+    return index.lookup(value).stream().findFirst().map(cache::get);
+  }
+
+  /**
+   * @return the entities with the given value, sorted by id
+   */
+  protected <V> List<T> findAll(Index<T, K, V> index, V value) {
+    var ids = index.lookup(value);
+    var entities = new ArrayList<T>(ids.size());
+    for (K id : ids) {
+      entities.add(cache.get(id));
+    }
+
+    return entities;
   }
 
   public Collection<T> getAll() {
@@ -43,6 +131,58 @@ public abstract class AbstractMemoryRepository<R extends AbstractRepository<T, K
   }
 
   public T save(T entity) {
+    entity = store(entity);
+    enqueue(entity.getId(), entity);
+
+    return entity;
+  }
+
+  /**
+   * Save many entities, they are written in the same flush
+   */
+  public List<T> saveAll(Collection<T> entities) {
+    var saved = new ArrayList<T>(entities.size());
+    for (T entity : entities) {
+      saved.add(store(entity));
+    }
+
+    synchronized (pendingWrites) {
+      saved.forEach(e -> pendingWrites.put(e.getId(), e));
+      flushIfFull();
+    }
+
+    return saved;
+  }
+
+  public void delete(K id) {
+    remove(id);
+    enqueue(id, null);
+  }
+
+  private T store(T entity) {
+    entity = assignId(entity);
+    for (var index : indexes) {
+      index.validate(entity);
+    }
+
+    var oldEntity = cache.put(entity.getId(), entity);
+    for (var index : indexes) {
+      index.update(oldEntity, entity);
+    }
+
+    return entity;
+  }
+
+  private void remove(K id) {
+    var oldEntity = cache.remove(id);
+    if (oldEntity != null) {
+      for (var index : indexes) {
+        index.update(oldEntity, null);
+      }
+    }
+  }
+
+  private T assignId(T entity) {
     if (entity.getId() == null) {
       if (entity instanceof AnonymousEntity) {
         long generatedId = 0;
@@ -56,14 +196,99 @@ public abstract class AbstractMemoryRepository<R extends AbstractRepository<T, K
       }
     }
 
-    cache.put(entity.getId(), entity);
-    backend.save(entity);
-
     return entity;
   }
 
+  private void enqueue(K id, T entity) {
+    synchronized (pendingWrites) {
+      pendingWrites.put(id, entity);
+      flushIfFull();
+    }
+  }
+
+  private void flushIfFull() {
+    if (pendingWrites.size() >= maxPendingWrites) {
+      flush();
+    }
+  }
+
   public Optional<T> get(K id) {
     return Optional.ofNullable(cache.get(id));
   }
 
+  /**
+   * Write the pending entities to the database
+   *
+   * @return a future completed once the entities are written
+   */
+  public CompletableFuture<Void> flush() {
+    var saves = new ArrayList<T>();
+    var deletes = new ArrayList<K>();
+    synchronized (pendingWrites) {
+      if (pendingWrites.isEmpty()) {
+        return CompletableFuture.completedFuture(null);
+      }
+
+      pendingWrites.forEach((id, entity) -> {
+        if (entity == null) {
+          deletes.add(id);
+        } else {
+          saves.add(entity);
+        }
+      });
+
+      pendingWrites.clear();
+      flushes.incrementAndGet();
+      flushedEntities.addAndGet(saves.size() + deletes.size());
+    }
+
+    long start = System.nanoTime();
+    return backend.writeAll(saves, deletes).whenComplete((r, e) -> {
+      long latency = System.nanoTime() - start;
+      lastFlushLatency = latency;
+      totalFlushLatency += latency;
+
+      int size = saves.size() + deletes.size();
+      if (e != null) {
+        Logger.error("Unable to write %d entities to the database", size);
+        e.printStackTrace();
+      } else {
+        Logger.debug("Flushed %d entities in %d ms", size, latency / 1_000_000);
+      }
+    });
+  }
+
+  /**
+   * @return entities waiting to be written
+   */
+  public int getPendingWrites() {
+    synchronized (pendingWrites) {
+      return pendingWrites.size();
+    }
+  }
+
+  public long getFlushes() {
+    return flushes.get();
+  }
+
+  public long getFlushedEntities() {
+    return flushedEntities.get();
+  }
+
+  /**
+   * @return time between the last flush request and its commit
+   */
+  public Duration getLastFlushLatency() {
+    return Duration.ofNanos(lastFlushLatency);
+  }
+
+  public Duration getAverageFlushLatency() {
+    long count = flushes.get();
+    if (count == 0) {
+      return Duration.ZERO;
+    }
+
+    return Duration.ofNanos(totalFlushLatency / count);
+  }
+
 }
@@ -1,16 +1,146 @@
 package ml.empee.upgradableCells.repositories.memory;
 
+import ml.empee.upgradableCells.config.PluginConfig;
+import ml.empee.upgradableCells.model.Member;
 import ml.empee.upgradableCells.model.entities.Cell;
 import ml.empee.upgradableCells.repositories.CellRepository;
+import ml.empee.upgradableCells.services.WorldService;
+import ml.empee.upgradableCells.utils.Logger;
 import mr.empee.lightwire.annotations.Singleton;
+import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Singleton
 public class CellMemoryRepository extends AbstractMemoryRepository<CellRepository, Cell, Long> {
 
-  public CellMemoryRepository(CellRepository repository) {
-    super(repository);
+  private static final long NO_CELL = -1;
+
+  private final WorldService worldService;
+  private long[] cellsBySlot = new long[0];
+
+  private final Index<Cell, Long, UUID> ownerIndex;
+  private final Index<Cell, Long, UUID> memberIndex;
+
+  public CellMemoryRepository(
+      CellRepository repository, WorldService worldService, JavaPlugin plugin, PluginConfig pluginConfig
+  ) {
+    super(repository, plugin, pluginConfig);
+    this.worldService = worldService;
+
+    indexSlots();
+    ownerIndex = addIndex("owner", c -> c.getOwner().map(Set::of).orElse(Set.of()));
+    memberIndex = addIndex(
+        "member", c -> c.getMembers().stream().map(Member::getUuid).collect(Collectors.toSet())
+    );
+  }
+
+  private void indexSlots() {
+    Arrays.fill(cellsBySlot, NO_CELL);
+    getAll().forEach(this::indexSlot);
+  }
+
+  private void indexSlot(Cell cell) {
+    var origin = cell.getOrigin();
+    if (!worldService.getCellWorld().equals(origin.getWorld())) {
+      return;
+    }
+
+    long slot = worldService.getSlot(origin.getBlockX(), origin.getBlockZ());
+    if (slot < 0 || slot >= Integer.MAX_VALUE - 8) {
+      Logger.warning("The cell %s isn't aligned with the cell grid", cell.getId());
+      return;
+    }
+
+    if (slot >= cellsBySlot.length) {
+      int oldLength = cellsBySlot.length;
+      cellsBySlot = Arrays.copyOf(cellsBySlot, (int) Math.max(slot + 1, oldLength * 2L));
+      Arrays.fill(cellsBySlot, oldLength, cellsBySlot.length, NO_CELL);
+    }
+
+    cellsBySlot[(int) slot] = cell.getId();
+  }
+
+  @Override
+  public void reload() {
+    super.reload();
+    indexSlots();
+  }
+
+  @Override
+  public Cell save(Cell entity) {
+    entity = super.save(entity);
+    indexSlot(entity);
+    return entity;
+  }
+
+  @Override
+  public List<Cell> saveAll(Collection<Cell> entities) {
+    var cells = super.saveAll(entities);
+    cells.forEach(this::indexSlot);
+    return cells;
+  }
+
+  @Override
+  public void delete(Long id) {
+    get(id).ifPresent(this::unindexSlot);
+    super.delete(id);
+  }
+
+  private void unindexSlot(Cell cell) {
+    var origin = cell.getOrigin();
+    long slot = worldService.getSlot(origin.getBlockX(), origin.getBlockZ());
+    if (getCellIdBySlot(slot) == cell.getId()) {
+      cellsBySlot[(int) slot] = NO_CELL;
+    }
+  }
+
+  /**
+   * @param slot slot index as returned by {@link WorldService#getSlot(int, int)}
+   * @return the cell pasted on the slot
+   */
+  public Optional<Cell> findBySlot(long slot) {
+    return findById(getCellIdBySlot(slot));
+  }
+
+  private long getCellIdBySlot(long slot) {
+    if (slot < 0 || slot >= cellsBySlot.length) {
+      return NO_CELL;
+    }
+
+    return cellsBySlot[(int) slot];
+  }
+
+  /**
+   * Find the cell whose slot contains the given block column of the cell world
+   */
+  public Optional<Cell> findByColumn(int blockX, int blockZ) {
+    return findBySlot(worldService.getSlot(blockX, blockZ));
+  }
+
+  public List<Cell> findByOwner(UUID owner) {
+    return findAll(ownerIndex, owner);
+  }
+
+  /**
+   * Find the cells where the player is a member, banned players are excluded
+   */
+  public List<Cell> findByMember(UUID member) {
+    return findAll(memberIndex, member);
+  }
+
+  private Optional<Cell> findById(long cellId) {
+    if (cellId < 0) {
+      return Optional.empty();
+    }
+
+    return get(cellId);
   }
 
 }
@@ -0,0 +1,123 @@
+package ml.empee.upgradableCells.repositories.memory;
+
+import lombok.Getter;
+import ml.empee.upgradableCells.model.entities.Entity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Secondary index of an in-memory repository, maps the values extracted from
+ * each entity to the ids of the entities
+ */
+
+public class Index<T extends Entity<K>, K, V> {
+
+  @Getter
+  private final String name;
+  @Getter
+  private final boolean unique;
+  private final Function<T, Collection<V>> extractor;
+  private final Map<V, SortedSet<K>> entries = new HashMap<>();
+
+  @Getter
+  private long hits;
+  @Getter
+  private long misses;
+
+  Index(String name, boolean unique, Function<T, Collection<V>> extractor) {
+    this.name = name;
+    this.unique = unique;
+    this.extractor = extractor;
+  }
+
+  private Collection<V> extract(@Nullable T entity) {
+    if (entity == null) {
+      return Set.of();
+    }
+
+    var values = extractor.apply(entity);
+    return values == null ? Set.of() : values;
+  }
+
+  /**
+   * @throws IllegalStateException if the entity would break the uniqueness of the index
+   */
+  void validate(T entity) {
+    if (!unique) {
+      return;
+    }
+
+    for (var value : extract(entity)) {
+      var ids = entries.get(value);
+      if (ids != null && !ids.contains(entity.getId())) {
+        throw new IllegalStateException(
+            "The value " + value + " of the index " + name + " is already used by " + ids.first()
+        );
+      }
+    }
+  }
+
+  /**
+   * Move the entity id between the values that changed
+   *
+   * @param oldEntity the stored version, null if the entity is new
+   * @param newEntity the new version, null if the entity has been deleted
+   */
+  void update(@Nullable T oldEntity, @Nullable T newEntity) {
+    var oldValues = extract(oldEntity);
+    var newValues = extract(newEntity);
+    K id = oldEntity != null ? oldEntity.getId() : Objects.requireNonNull(newEntity).getId();
+
+    for (var value : oldValues) {
+      if (!newValues.contains(value)) {
+        var ids = entries.get(value);
+        if (ids != null) {
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            entries.remove(value);
+          }
+        }
+      }
+    }
+
+    for (var value : newValues) {
+      if (!oldValues.contains(value)) {
+        entries.computeIfAbsent(value, k -> new TreeSet<>()).add(id);
+      }
+    }
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return ids of the entities with the given value, sorted
+   */
+  Set<K> lookup(V value) {
+    var ids = entries.get(value);
+    if (ids == null) {
+      misses += 1;
+      return Set.of();
+    }
+
+    hits += 1;
+    return ids;
+  }
+
+  /**
+   * @return number of distinct values
+   */
+  public int size() {
+    return entries.size();
+  }
+
+}
@@ -6,13 +6,18 @@ import lombok.SneakyThrows;
 import ml.empee.upgradableCells.config.PluginConfig;
 import ml.empee.upgradableCells.model.CellProject;
 import ml.empee.upgradableCells.model.Member;
+import ml.empee.upgradableCells.model.PasteType;
 import ml.empee.upgradableCells.model.entities.Cell;
+import ml.empee.upgradableCells.model.entities.PasteCheckpoint;
 import ml.empee.upgradableCells.model.events.CellMemberJoinEvent;
 import ml.empee.upgradableCells.model.events.CellMemberLeaveEvent;
 import ml.empee.upgradableCells.model.events.CellMemberPardonEvent;
 import ml.empee.upgradableCells.model.events.CellMemberRoleChangeEvent;
+import ml.empee.upgradableCells.model.events.CellVisibilityChangeEvent;
 import ml.empee.upgradableCells.repositories.memory.CellMemoryRepository;
 import ml.empee.upgradableCells.utils.Logger;
+import ml.empee.upgradableCells.utils.helpers.PastedBlocks;
+import ml.empee.upgradableCells.utils.helpers.Schematic;
 import mr.empee.lightwire.annotations.Singleton;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -20,12 +25,16 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -39,6 +48,8 @@ public class CellService {
   private final PluginConfig pluginConfig;
   private final CellMemoryRepository cellRepository;
   private final WorldService worldService;
+  private final PasteService pasteService;
+  private final LeaderboardService leaderboardService;
 
   private final List<CellProject> cellProjects = new ArrayList<>();
   private final Cache<UUID, List<Long>> invitations = CacheBuilder.newBuilder()
@@ -49,29 +60,71 @@ public class CellService {
 
   public CellService(
       JavaPlugin plugin, PluginConfig pluginConfig,
-      CellMemoryRepository cellRepository, WorldService worldService
+      CellMemoryRepository cellRepository, WorldService worldService, PasteService pasteService,
+      LeaderboardService leaderboardService
   ) {
     this.pluginConfig = pluginConfig;
     this.cellRepository = cellRepository;
     this.worldService = worldService;
+    this.pasteService = pasteService;
+    this.leaderboardService = leaderboardService;
     this.schematicFolder = new File(plugin.getDataFolder(), "levels");
 
     loadCellUpgrades();
-    // TODO: Pasting partially pasted cells
+    resumePastes();
   }
 
   /**
-   * Load cell levels from the schematic folder
+   * Load cell levels from the schematic folder, schematics are read in parallel
    */
   private void loadCellUpgrades() {
     schematicFolder.mkdir();
     cellProjects.clear();
 
     Logger.info("Loading cell upgrades...");
+    long start = System.currentTimeMillis();
+
+    var projects = pluginConfig.getCellProjects();
+    var loaders = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(projects.size(), Runtime.getRuntime().availableProcessors())),
+        r -> new Thread(r, "schematic-loader")
+    );
+
+    //Levels sharing a file load it once, parallel loads of a file would race on its cache
+    var loadings = new LinkedHashMap<String, CompletableFuture<Schematic>>();
+    try {
+      projects.stream()
+          .filter(CellProject::hasSchematic)
+          .forEach(p -> loadings.computeIfAbsent(
+              p.getSchematicId(), id -> CompletableFuture.supplyAsync(() -> loadSchematic(p), loaders)
+          ));
+
+      //Fail as soon as a level fails, without waiting for the others
+      var firstFailure = new CompletableFuture<Void>();
+      loadings.values().forEach(l -> l.whenComplete((r, e) -> {
+        if (e != null) {
+          firstFailure.completeExceptionally(e.getCause());
+        }
+      }));
+
+      CompletableFuture.anyOf(
+          CompletableFuture.allOf(loadings.values().toArray(new CompletableFuture[0])), firstFailure
+      ).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    } finally {
+      loaders.shutdownNow();
+    }
 
-    for (CellProject project : pluginConfig.getCellProjects()) {
+    var pasted = new PastedBlocks();
+    for (CellProject project : projects) {
       if (project.hasSchematic()) {
-        project.loadSchematic(schematicFolder);
+        project.setSchematic(loadings.get(project.getSchematicId()).join());
+        project.adaptSchematic(pasted);
       }
 
       cellProjects.add(project);
@@ -83,12 +136,67 @@ public class CellService {
       throw new IllegalStateException("The first cell must have a schematic!");
     }
 
-    Logger.info("Loaded %s cells", cellProjects.size());
+    Logger.info("Loaded %s cells in %d ms", cellProjects.size(), System.currentTimeMillis() - start);
+  }
+
+  private Schematic loadSchematic(CellProject project) {
+    long start = System.currentTimeMillis();
+    Schematic schematic;
+    try {
+      schematic = new Schematic(new File(schematicFolder, project.getSchematicId()));
+    } catch (Exception e) {
+      throw new IllegalStateException("Unable to load the schematic of the level " + project.getLevel(), e);
+    }
+
+    Logger.info("Loaded schematic of level %d in %d ms", project.getLevel(), System.currentTimeMillis() - start);
+    return schematic;
+  }
+
+  /**
+   * Resume the pastes interrupted by a restart, cells left updating without
+   * a checkpoint are pasted again from the start
+   */
+  private void resumePastes() {
+    var resumed = new HashSet<Long>();
+    var outdatedCheckpoints = new ArrayList<Long>();
+    for (var checkpoint : pasteService.findCheckpoints().join()) {
+      var cell = cellRepository.get(checkpoint.getId()).orElse(null);
+      boolean outdated = cell == null || !cell.getLevel().equals(checkpoint.getLevel());
+      if (outdated || cell.getLevel() >= cellProjects.size()) {
+        outdatedCheckpoints.add(checkpoint.getId());
+        continue;
+      }
+
+      Logger.info("Resuming the paste of the cell %d at block %d", cell.getId(), checkpoint.getCursor());
+      submitPaste(cell, checkpoint);
+      resumed.add(cell.getId());
+    }
+
+    pasteService.deleteCheckpoints(outdatedCheckpoints);
+
+    var unlocked = new ArrayList<Cell>();
+    for (var cell : new ArrayList<>(cellRepository.getAll())) {
+      if (!cell.isUpdating() || resumed.contains(cell.getId())) {
+        continue;
+      }
+
+      if (cell.getLevel() >= cellProjects.size() || !getCellProject(cell.getLevel()).hasSchematic()) {
+        unlocked.add(cell.withUpdating(false));
+        continue;
+      }
+
+      Logger.info("Pasting again the cell %d", cell.getId());
+      var type = cell.getLevel() == 0 ? PasteType.CLAIM : PasteType.UPGRADE;
+      submitPaste(cell, PasteCheckpoint.of(cell, type));
+    }
+
+    cellRepository.saveAll(unlocked);
   }
 
   public void reload() {
     loadCellUpgrades();
     cellRepository.reload();
+    leaderboardService.rebuild();
   }
 
   public CellProject getLastProject() {
@@ -108,44 +216,25 @@ public class CellService {
   }
 
   public List<Cell> findCellByOwner(UUID owner) {
-    return cellRepository.getAll().stream()
-        .filter(c -> owner.equals(c.getOwner().orElse(null)))
-        .collect(Collectors.toList());
+    return cellRepository.findByOwner(owner);
   }
 
   public List<Cell> findCellsByMember(UUID member) {
-    return cellRepository.getAll().stream()
-        .filter(c -> c.getMember(member).isPresent())
-        .collect(Collectors.toList());
-  }
-
-  /**
-   * Find cells with most members
-   */
-  public List<Cell> findCellWithMostMembers(int limit) {
-    return cellRepository.getAll().stream()
-        .filter(Cell::isPublicVisible)
-        .sorted(Comparator.comparingInt(a -> a.getMembersAsPlayers().size()))
-        .limit(limit)
-        .collect(Collectors.toList());
+    return cellRepository.findByMember(member);
   }
 
   /**
    * @return the cell within the location
    */
   public Optional<Cell> findCellByLocation(Location location) {
-    var position = location.toVector();
-    var margin = worldService.getMargin();
-
-    return cellRepository.getAll().stream()
-        .filter(c -> {
-          var origin = c.getOrigin();
-          if (!origin.getWorld().equals(location.getWorld())) {
-            return false;
-          }
-
-          return position.isInAABB(origin.toVector(), origin.add(margin, margin, margin).toVector());
-        }).findAny();
+    if (!worldService.getCellWorld().equals(location.getWorld())) {
+      return Optional.empty();
+    }
+
+    return cellRepository.findByColumn(location.getBlockX(), location.getBlockZ()).filter(c -> {
+      int y = location.getBlockY() - c.getOrigin().getBlockY();
+      return y >= 0 && y <= worldService.getMargin();
+    });
   }
 
   public Location getSpawnpoint(Cell cell) {
@@ -158,8 +247,9 @@ public class CellService {
   public CompletableFuture<Cell> createCell(UUID player) {
     Cell cell = Cell.of(player, 0, worldService.getFreeLocation());
     cell = cellRepository.save(cell);
+    leaderboardService.update(cell);
 
-    return pasteCellStructure(cell.getId());
+    return pasteCellStructure(cell.getId(), PasteType.CLAIM);
   }
 
   /**
@@ -169,24 +259,36 @@ public class CellService {
     var cell = cellRepository.get(cellId).orElseThrow();
     cell = cell.withLevel(level);
     cell = cellRepository.save(cell);
+    leaderboardService.update(cell);
 
     CellProject project = getCellProject(cell.getLevel());
     if (!project.hasSchematic()) {
       return CompletableFuture.completedFuture(null);
     }
 
-    return pasteCellStructure(cell.getId());
+    return pasteCellStructure(cell.getId(), PasteType.UPGRADE);
   }
 
-  private CompletableFuture<Cell> pasteCellStructure(Long cellId) {
+  private CompletableFuture<Cell> pasteCellStructure(Long cellId, PasteType type) {
     var cell = cellRepository.get(cellId).orElseThrow();
+    cell = cellRepository.save(cell.withUpdating(true));
 
+    return submitPaste(cell, PasteCheckpoint.of(cell, type));
+  }
+
+  private CompletableFuture<Cell> submitPaste(Cell cell, PasteCheckpoint checkpoint) {
     CellProject project = getCellProject(cell.getLevel());
-    cell = cellRepository.save(cell.withUpdating(true));
+    var owner = cell.getOwner().orElse(null);
+
+    //A failed paste keeps its checkpoint, the cell is unlocked meanwhile
+    return pasteService.submit(project.paste(cell), checkpoint, owner).handle((a, e) -> {
+      var c = cellRepository.get(cell.getId()).orElseThrow();
+      c = cellRepository.save(c.withUpdating(false));
+      if (e != null) {
+        throw new CompletionException(e);
+      }
 
-    return project.paste(cell).thenApply(a -> {
-      var c = cellRepository.get(cellId).orElseThrow();
-      return cellRepository.save(c.withUpdating(false));
+      return c;
     });
   }
 
@@ -199,6 +301,8 @@ public class CellService {
   public Cell setVisibility(Long cellId, boolean publicVisible) {
     var cell = cellRepository.get(cellId).orElseThrow();
     cell = cellRepository.save(cell.withPublicVisible(publicVisible));
+
+    Bukkit.getPluginManager().callEvent(new CellVisibilityChangeEvent(cell));
     return cell;
   }
 
@@ -250,6 +354,31 @@ public class CellService {
     return cell;
   }
 
+  /**
+   * Ban many members at once, the cell is saved a single time
+   */
+  public Cell banMembers(Long cellId, Collection<UUID> uuids) {
+    var cell = cellRepository.get(cellId).orElseThrow();
+    var banned = new ArrayList<Member>();
+    for (var uuid : uuids) {
+      var member = cell.getMember(uuid).orElse(null);
+      if (member == null) {
+        continue;
+      }
+
+      cell = cell.withBannedMember(member.withBannedSince(System.currentTimeMillis()));
+      cell = cell.withoutMember(uuid);
+      banned.add(member);
+    }
+
+    cell = cellRepository.save(cell);
+    for (var member : banned) {
+      Bukkit.getPluginManager().callEvent(new CellMemberLeaveEvent(cell, member, true));
+    }
+
+    return cell;
+  }
+
   public Cell pardonMember(Long cellId, UUID uuid) {
     var cell = cellRepository.get(cellId).orElseThrow();
     cell = cellRepository.save(cell.withoutBannedMember(uuid));
@@ -0,0 +1,216 @@
+package ml.empee.upgradableCells.services;
+
+import lombok.Value;
+import ml.empee.upgradableCells.config.PluginConfig;
+import ml.empee.upgradableCells.model.CellProject;
+import ml.empee.upgradableCells.model.Member;
+import ml.empee.upgradableCells.model.entities.Cell;
+import ml.empee.upgradableCells.model.events.CellMemberJoinEvent;
+import ml.empee.upgradableCells.model.events.CellMemberLeaveEvent;
+import ml.empee.upgradableCells.model.events.CellMemberRoleChangeEvent;
+import ml.empee.upgradableCells.model.events.CellVisibilityChangeEvent;
+import ml.empee.upgradableCells.repositories.memory.CellMemoryRepository;
+import mr.empee.lightwire.annotations.Singleton;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Rankings of the public cells, one for each metric, kept sorted as cells change
+ * so that reading the top cells never sorts the whole repository.
+ * <br><br>
+ * Every ranking has a version that changes only when its order or scores change,
+ * callers can cache what they build from a ranking until the version changes
+ */
+
+@Singleton
+public class LeaderboardService implements Listener {
+
+  private static final Comparator<Rank> ORDER = Comparator.comparingDouble(Rank::getScore).reversed()
+      .thenComparingLong(Rank::getCellId);
+
+  private final PluginConfig pluginConfig;
+  private final CellMemoryRepository cellRepository;
+
+  private final Map<Metric, Ranking> rankings = new EnumMap<>(Metric.class);
+
+  /**
+   * Money spent to reach each level, from the claim of the cell
+   */
+  private double[] spentByLevel = new double[0];
+
+  public LeaderboardService(PluginConfig pluginConfig, CellMemoryRepository cellRepository) {
+    this.pluginConfig = pluginConfig;
+    this.cellRepository = cellRepository;
+
+    for (var metric : Metric.values()) {
+      rankings.put(metric, new Ranking());
+    }
+
+    rebuild();
+  }
+
+  /**
+   * Rank again every cell of the repository, costs are read again from the config
+   */
+  public void rebuild() {
+    var projects = pluginConfig.getCellProjects();
+    spentByLevel = new double[projects.size()];
+    double spent = 0;
+    for (CellProject project : projects) {
+      spent += project.getCost();
+      spentByLevel[project.getLevel()] = spent;
+    }
+
+    rankings.values().forEach(Ranking::clear);
+    cellRepository.getAll().forEach(this::update);
+  }
+
+  /**
+   * Move the cell to its new position in every ranking, hidden cells are removed
+   */
+  public void update(Cell cell) {
+    for (var ranking : rankings.entrySet()) {
+      var score = cell.isPublicVisible() ? getScore(ranking.getKey(), cell) : null;
+      ranking.getValue().update(cell.getId(), score);
+    }
+  }
+
+  public void remove(Long cellId) {
+    rankings.values().forEach(r -> r.update(cellId, null));
+  }
+
+  /**
+   * Force every ranking to a new version, used when something shown with the
+   * ranked cells changes without moving them
+   */
+  public void invalidate() {
+    rankings.values().forEach(r -> r.version += 1);
+  }
+
+  public double getScore(Metric metric, Cell cell) {
+    switch (metric) {
+      case LEVEL:
+        return cell.getLevel();
+      case SPENT:
+        if (spentByLevel.length == 0) {
+          return 0;
+        }
+
+        return spentByLevel[Math.min(cell.getLevel(), spentByLevel.length - 1)];
+      case MEMBERS:
+      default:
+        return cell.getMembers().size();
+    }
+  }
+
+  public long getVersion(Metric metric) {
+    return rankings.get(metric).version;
+  }
+
+  /**
+   * @return number of ranked cells
+   */
+  public int size(Metric metric) {
+    return rankings.get(metric).ranks.size();
+  }
+
+  /**
+   * @return the ranked cells from the given position, best first
+   */
+  public List<Cell> findTopCells(Metric metric, int offset, int limit) {
+    var ranks = rankings.get(metric).ranks;
+    var result = new ArrayList<Cell>(Math.max(0, Math.min(limit, ranks.size() - offset)));
+
+    int position = 0;
+    for (var rank : ranks) {
+      if (result.size() >= limit) {
+        break;
+      }
+
+      if (position++ < offset) {
+        continue;
+      }
+
+      cellRepository.get(rank.getCellId()).ifPresent(result::add);
+    }
+
+    return result;
+  }
+
+  @EventHandler
+  public void onMemberJoin(CellMemberJoinEvent event) {
+    update(event.getCell());
+  }
+
+  @EventHandler
+  public void onMemberLeave(CellMemberLeaveEvent event) {
+    update(event.getCell());
+  }
+
+  @EventHandler
+  public void onRoleChange(CellMemberRoleChangeEvent event) {
+    if (event.getCell().isPublicVisible() && event.getNewRole() == Member.Rank.OWNER) {
+      invalidate();
+    }
+  }
+
+  @EventHandler
+  public void onVisibilityChange(CellVisibilityChangeEvent event) {
+    update(event.getCell());
+  }
+
+  public enum Metric {
+    MEMBERS, LEVEL, SPENT
+  }
+
+  private static class Ranking {
+    private final NavigableSet<Rank> ranks = new TreeSet<>(ORDER);
+    private final Map<Long, Rank> byCell = new HashMap<>();
+    private long version;
+
+    /**
+     * @param score new score of the cell, null to remove it
+     */
+    private void update(Long cellId, Double score) {
+      var old = byCell.get(cellId);
+      if (old == null ? score == null : score != null && old.getScore() == score) {
+        return;
+      }
+
+      if (old != null) {
+        ranks.remove(old);
+        byCell.remove(cellId);
+      }
+
+      if (score != null) {
+        var rank = new Rank(cellId, score);
+        ranks.add(rank);
+        byCell.put(cellId, rank);
+      }
+
+      version += 1;
+    }
+
+    private void clear() {
+      ranks.clear();
+      byCell.clear();
+      version += 1;
+    }
+  }
+
+  @Value
+  private static class Rank {
+    Long cellId;
+    double score;
+  }
+
+}
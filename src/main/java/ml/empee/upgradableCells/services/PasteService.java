@@ -0,0 +1,413 @@
+package ml.empee.upgradableCells.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ml.empee.upgradableCells.config.LangConfig;
+import ml.empee.upgradableCells.config.PluginConfig;
+import ml.empee.upgradableCells.model.PasteType;
+import ml.empee.upgradableCells.model.entities.PasteCheckpoint;
+import ml.empee.upgradableCells.repositories.PasteCheckpointRepository;
+import ml.empee.upgradableCells.utils.Logger;
+import ml.empee.upgradableCells.utils.helpers.BukkitPasteEngine;
+import ml.empee.upgradableCells.utils.helpers.NmsPasteEngine;
+import ml.empee.upgradableCells.utils.helpers.PasteEngine;
+import ml.empee.upgradableCells.utils.helpers.PasteJob;
+import ml.empee.upgradableCells.utils.helpers.PastedBlocks;
+import ml.empee.upgradableCells.utils.helpers.Schematic;
+import ml.empee.upgradableCells.utils.helpers.SectionPasteEngine;
+import ml.empee.upgradableCells.utils.helpers.WorldEditPasteEngine;
+import mr.empee.lightwire.annotations.Singleton;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Paste schematics spending a limited amount of time every tick.
+ * <br><br>
+ * Only a limited number of jobs runs at the same time and the tick time is split between them,
+ * the others wait inside a queue ordered by priority
+ */
+
+@Singleton
+public class PasteService implements Listener {
+
+  private static final double TICK_TIME = 50; //ms
+  private static final double LAG_TOLERANCE = 5; //ms
+  private static final double BUDGET_STEP = 0.5; //ms
+  private static final MethodHandle averageTickTime = findAverageTickTime();
+
+  private final PluginConfig pluginConfig;
+  private final LangConfig langConfig;
+  private final PasteCheckpointRepository checkpointRepository;
+
+  private final Deque<Entry> activeJobs = new ArrayDeque<>();
+  private final List<Entry> waitingJobs = new ArrayList<>();
+  private long submittedJobs;
+
+  @Getter
+  private final List<PasteEngine> engines = List.of(
+      new NmsPasteEngine(), new SectionPasteEngine(), new WorldEditPasteEngine(), new BukkitPasteEngine()
+  );
+  @Getter
+  private final PasteEngine engine;
+
+  private double budget;
+  private double mspt = TICK_TIME;
+  private long lastTick;
+
+  public PasteService(
+      JavaPlugin plugin, PluginConfig pluginConfig, LangConfig langConfig,
+      PasteCheckpointRepository checkpointRepository
+  ) {
+    this.pluginConfig = pluginConfig;
+    this.langConfig = langConfig;
+    this.checkpointRepository = checkpointRepository;
+    this.budget = pluginConfig.getMinPasteTime();
+
+    this.engine = selectEngine(pluginConfig.getPasteEngine());
+    Logger.info("Pasting cells with the %s engine", engine.getName());
+
+    Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+  }
+
+  private PasteEngine selectEngine(String name) {
+    if (!name.equalsIgnoreCase("AUTO")) {
+      var engine = findEngine(name);
+      if (engine.isPresent() && engine.get().isSupported()) {
+        return engine.get();
+      }
+
+      Logger.warning("The paste engine %s isn't available on this server, falling back on AUTO", name);
+    }
+
+    if (WorldEditPasteEngine.isFastAsyncWorldEditInstalled()) {
+      return findEngine("WORLDEDIT").orElseThrow();
+    }
+
+    return engines.stream()
+        .filter(e -> e.getName().equals("NMS") || e.getName().equals("BUKKIT"))
+        .filter(PasteEngine::isSupported)
+        .findFirst().orElseThrow();
+  }
+
+  public Optional<PasteEngine> findEngine(String name) {
+    return engines.stream()
+        .filter(e -> e.getName().equalsIgnoreCase(name))
+        .findFirst();
+  }
+
+  /**
+   * Paste the schematic with every supported engine, clearing it after each run.
+   * The pastes go through the queue after the cell pastes and share its tick budget
+   *
+   * @param origin an area where no cell is pasted
+   * @return a future completed with the blocks per second of each engine
+   */
+  public CompletableFuture<Map<PasteEngine, Double>> benchmark(Schematic schematic, Location origin) {
+    var indexes = schematic.diff(null, new PastedBlocks());
+    var results = new LinkedHashMap<PasteEngine, Double>();
+
+    var benchmark = CompletableFuture.<Void>completedFuture(null);
+    for (var engine : engines) {
+      if (!engine.isSupported()) {
+        continue;
+      }
+
+      benchmark = benchmark.thenCompose(v -> {
+        var paste = schematic.paste(origin, indexes);
+        return enqueue(paste, engine).thenCompose(p -> {
+          results.put(engine, paste.getBlocksPerSecond());
+          return enqueue(schematic.clear(origin, indexes), engine);
+        });
+      });
+    }
+
+    return benchmark.thenApply(v -> results);
+  }
+
+  /**
+   * Enqueue a job that isn't checkpointed, it is lost on restart
+   */
+  private CompletableFuture<Void> enqueue(PasteJob job, PasteEngine engine) {
+    job.setEngine(engine);
+    waitingJobs.add(new Entry(job, null, null, submittedJobs++));
+    startWaitingJobs();
+    return job.getCompletion();
+  }
+
+  /**
+   * Paper exposes the real tick duration from 1.15, older servers fall back on the
+   * interval between ticks that can only detect an overloaded server
+   */
+  private static MethodHandle findAverageTickTime() {
+    try {
+      return MethodHandles.publicLookup().findVirtual(
+          Bukkit.getServer().getClass(), "getAverageTickTime", MethodType.methodType(double.class)
+      ).bindTo(Bukkit.getServer());
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Enqueue a paste job, the job progress is saved on each world save so that it can be
+   * resumed after a restart. The checkpoint is deleted once the job finishes
+   *
+   * @param checkpoint progress of the job, the job resumes from its cursor
+   * @param player player notified about the job progress, nullable
+   * @return a future completed when the job finishes
+   */
+  public CompletableFuture<Void> submit(PasteJob job, PasteCheckpoint checkpoint, UUID player) {
+    if (checkpoint.getCursor() > 0 && !engine.getName().equals(checkpoint.getEngine())) {
+      Logger.debug("The paste of %s was started by another engine, restarting it", job.getName());
+      checkpoint = checkpoint.withCursor(0);
+    }
+
+    checkpoint = checkpoint.withEngine(engine.getName());
+    checkpointRepository.save(checkpoint);
+
+    job.setEngine(engine);
+    job.resumeFrom(checkpoint.getCursor());
+
+    var entry = new Entry(job, checkpoint, player, submittedJobs++);
+    waitingJobs.add(entry);
+    startWaitingJobs();
+
+    if (waitingJobs.contains(entry)) {
+      notify(entry, langConfig.translate("cell.paste.queued", getQueuePosition(entry)));
+    }
+
+    return job.getCompletion();
+  }
+
+  /**
+   * Save the progress of the active jobs
+   */
+  public void saveCheckpoints() {
+    for (var entry : activeJobs) {
+      if (entry.getCheckpoint() == null) {
+        continue;
+      }
+
+      var checkpoint = entry.getCheckpoint().withCursor(entry.getJob().getCommittedCursor());
+      checkpointRepository.save(checkpoint);
+    }
+  }
+
+  /**
+   * Blocks pasted so far are written to disk by the save, so the progress can be checkpointed
+   */
+  @EventHandler
+  public void onWorldSave(WorldSaveEvent event) {
+    saveCheckpoints();
+  }
+
+  public CompletableFuture<List<PasteCheckpoint>> findCheckpoints() {
+    return checkpointRepository.findAll();
+  }
+
+  public void deleteCheckpoints(Collection<Long> ids) {
+    if (!ids.isEmpty()) {
+      checkpointRepository.deleteAll(ids);
+    }
+  }
+
+  public List<PasteJob> getActiveJobs() {
+    var jobs = new ArrayList<PasteJob>();
+    activeJobs.forEach(e -> jobs.add(e.getJob()));
+    return jobs;
+  }
+
+  public int getWaitingJobs() {
+    return waitingJobs.size();
+  }
+
+  private int getQueuePosition(Entry entry) {
+    var queue = new ArrayList<>(waitingJobs);
+    queue.sort(queueOrder());
+    return queue.indexOf(entry) + 1;
+  }
+
+  /**
+   * Order of the waiting jobs: configured type priority, then online players, then submission
+   */
+  private Comparator<Entry> queueOrder() {
+    var priorities = pluginConfig.getPastePriorities();
+    Comparator<Entry> order = Comparator.comparingInt(e -> {
+      int priority = priorities.indexOf(e.getType());
+      return priority == -1 ? Integer.MAX_VALUE : priority;
+    });
+
+    if (pluginConfig.isPastingOnlinePlayersFirst()) {
+      order = order.thenComparing(e -> e.getOnlinePlayer() == null);
+    }
+
+    return order.thenComparingLong(Entry::getSequence);
+  }
+
+  private void startWaitingJobs() {
+    if (waitingJobs.isEmpty() || activeJobs.size() >= pluginConfig.getMaxActivePastes()) {
+      return;
+    }
+
+    var order = queueOrder();
+    while (!waitingJobs.isEmpty() && activeJobs.size() < pluginConfig.getMaxActivePastes()) {
+      var next = waitingJobs.stream().min(order).orElseThrow();
+      waitingJobs.remove(next);
+      activeJobs.addLast(next);
+
+      Logger.debug("Starting pasting of schematic " + next.getJob().getName());
+      notify(next, langConfig.translate("cell.paste.started"));
+    }
+  }
+
+  private void notify(Entry entry, String message) {
+    var player = entry.getOnlinePlayer();
+    if (player != null) {
+      Logger.log(player, message);
+    }
+  }
+
+  private void tick() {
+    long now = System.nanoTime();
+    updateMspt(now);
+    lastTick = now;
+
+    if (activeJobs.isEmpty()) {
+      budget = pluginConfig.getMinPasteTime();
+      return;
+    }
+
+    updateBudget();
+
+    //Round-robin between the active jobs, each one gets an equal slice of the tick
+    long deadline = now + (long) (budget * 1_000_000);
+    long slice = (long) (budget * 1_000_000) / activeJobs.size();
+    int turns = activeJobs.size();
+    for (int i = 0; i < turns && System.nanoTime() < deadline; i++) {
+      var entry = activeJobs.pollFirst();
+      var job = entry.getJob();
+      boolean finished;
+      try {
+        finished = job.pasteUntil(Math.min(deadline, System.nanoTime() + slice));
+      } catch (RuntimeException e) {
+        fail(entry, e);
+        continue;
+      }
+
+      if (!finished) {
+        activeJobs.addLast(entry);
+        continue;
+      }
+
+      Logger.debug(
+          "Finished pasting schematic %s (%.0f blocks/s)", job.getName(), job.getBlocksPerSecond()
+      );
+
+      if (entry.getCheckpoint() != null) {
+        checkpointRepository.delete(entry.getCheckpoint().getId());
+      }
+
+      job.getCompletion().complete(null);
+    }
+
+    startWaitingJobs();
+  }
+
+  /**
+   * Drop a job that threw while pasting, its checkpoint is kept so that the paste
+   * is resumed from the last committed block after a restart
+   */
+  private void fail(Entry entry, RuntimeException error) {
+    var job = entry.getJob();
+    Logger.error("Unable to paste schematic %s, it will be resumed after a restart", job.getName());
+    error.printStackTrace();
+
+    if (entry.getCheckpoint() != null) {
+      checkpointRepository.save(entry.getCheckpoint().withCursor(job.getCommittedCursor()));
+    }
+
+    notify(entry, langConfig.translate("cell.paste.failed"));
+    job.getCompletion().completeExceptionally(error);
+  }
+
+  private void updateMspt(long now) {
+    if (averageTickTime != null) {
+      try {
+        mspt = (double) averageTickTime.invokeExact();
+        return;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    if (lastTick != 0) {
+      mspt = (mspt * 0.8) + ((now - lastTick) / 1_000_000D * 0.2);
+    }
+  }
+
+  /**
+   * Halve the paste time when the server is overloaded, grow it slowly while it is idle
+   */
+  private void updateBudget() {
+    boolean overloaded;
+    boolean idle;
+    if (averageTickTime != null) {
+      overloaded = mspt > pluginConfig.getMaxPasteMspt();
+      idle = mspt + BUDGET_STEP < pluginConfig.getMaxPasteMspt();
+    } else {
+      overloaded = mspt > TICK_TIME + LAG_TOLERANCE;
+      idle = !overloaded;
+    }
+
+    if (overloaded) {
+      budget = Math.max(pluginConfig.getMinPasteTime(), budget / 2);
+    } else if (idle) {
+      budget = Math.min(pluginConfig.getMaxPasteTime(), budget + BUDGET_STEP);
+    }
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  private static class Entry {
+    private final PasteJob job;
+    @Nullable
+    private final PasteCheckpoint checkpoint;
+    private final UUID player;
+    private final long sequence;
+
+    /**
+     * @return the type of the paste, null for jobs without a checkpoint that run last
+     */
+    @Nullable
+    public PasteType getType() {
+      return checkpoint == null ? null : checkpoint.getType();
+    }
+
+    @Nullable
+    public Player getOnlinePlayer() {
+      return player == null ? null : Bukkit.getPlayer(player);
+    }
+  }
+
+}
@@ -90,4 +90,33 @@ public class WorldService {
     return new Location(cellWorld, x * margin, 50, z * margin);
   }
 
+  /**
+   * Inverse of {@link #getFreeLocation()}, maps a block column to the slot that has been
+   * assigned to the cell pasted there
+   *
+   * @return the slot index or -1 if the column doesn't belong to any slot
+   */
+  public long getSlot(int blockX, int blockZ) {
+    long x = Math.floorDiv(blockX, margin);
+    long z = Math.floorDiv(blockZ, margin);
+    if (x == 0 || z == 0) {
+      return -1;
+    }
+
+    int sectorIndex;
+    if (x < 0) {
+      sectorIndex = z > 0 ? 0 : 1;
+    } else {
+      sectorIndex = z < 0 ? 2 : 3;
+    }
+
+    x = Math.abs(x);
+    z = Math.abs(z);
+
+    long size = Math.max(x, z);
+    long cellIndex = x == size ? z - 1 : size + x - 1;
+
+    return 4 * ((size - 1) * (size - 1) + cellIndex) + sectorIndex;
+  }
+
 }
@@ -0,0 +1,118 @@
+package ml.empee.upgradableCells.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ml.empee.upgradableCells.model.Member;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Compact binary format of the cell members.
+ * <br><br>
+ * Layout: version byte, flags byte, then rank ordinal, member-since and banned-since
+ * as unsigned varints, each one present only if its flag is set
+ */
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberCodec {
+
+  private static final byte VERSION = 1;
+
+  private static final int HAS_RANK = 1;
+  private static final int HAS_MEMBER_SINCE = 1 << 1;
+  private static final int HAS_BANNED_SINCE = 1 << 2;
+
+  private static final Member.Rank[] RANKS = Member.Rank.values();
+
+  /**
+   * @return the uuid as 16 big-endian bytes
+   */
+  public static byte[] encodeUuid(UUID uuid) {
+    return ByteBuffer.allocate(16)
+        .putLong(uuid.getMostSignificantBits())
+        .putLong(uuid.getLeastSignificantBits())
+        .array();
+  }
+
+  public static UUID decodeUuid(byte[] raw) {
+    var buffer = ByteBuffer.wrap(raw);
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+
+  /**
+   * Encode everything but the uuid of the member, that is stored as its own column
+   */
+  public static byte[] encode(Member member) {
+    var out = new ByteArrayOutputStream(16);
+    out.write(VERSION);
+
+    int flags = 0;
+    flags |= member.getRank() != null ? HAS_RANK : 0;
+    flags |= member.getMemberSinceMillis() != null ? HAS_MEMBER_SINCE : 0;
+    flags |= member.getBannedSinceMillis() != null ? HAS_BANNED_SINCE : 0;
+    out.write(flags);
+
+    if (member.getRank() != null) {
+      writeVarLong(out, member.getRank().ordinal());
+    }
+
+    if (member.getMemberSinceMillis() != null) {
+      writeVarLong(out, member.getMemberSinceMillis());
+    }
+
+    if (member.getBannedSinceMillis() != null) {
+      writeVarLong(out, member.getBannedSinceMillis());
+    }
+
+    return out.toByteArray();
+  }
+
+  public static Member decode(UUID uuid, byte[] raw) {
+    var buffer = ByteBuffer.wrap(raw);
+    byte version = buffer.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported member format version " + version);
+    }
+
+    int flags = buffer.get();
+    var member = Member.builder().uuid(uuid);
+    if ((flags & HAS_RANK) != 0) {
+      member.rank(RANKS[(int) readVarLong(buffer)]);
+    }
+
+    if ((flags & HAS_MEMBER_SINCE) != 0) {
+      member.memberSince(readVarLong(buffer));
+    }
+
+    if ((flags & HAS_BANNED_SINCE) != 0) {
+      member.bannedSince(readVarLong(buffer));
+    }
+
+    return member.build();
+  }
+
+  private static void writeVarLong(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    out.write((int) value);
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+}
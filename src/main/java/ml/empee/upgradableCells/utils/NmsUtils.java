@@ -3,12 +3,14 @@ package ml.empee.upgradableCells.utils;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.data.BlockData;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
 
 /**
@@ -18,18 +20,48 @@ import java.util.Arrays;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class NmsUtils {
 
-  private static Method getNmsWorldMethod;
-  private static Constructor<?> blockPositionConstructor;
-  private static Method getBlockStateMethod;
-  private static Method setBlockMethod;
+  private static final int SET_BLOCK_FLAGS = 2 | 16 | 1024;
 
-  @SneakyThrows
-  public static Object buildBlockPos(int x, int y, int z) {
-    if (blockPositionConstructor == null) {
-      blockPositionConstructor = findBlockPosClass().getConstructor(int.class, int.class, int.class);
+  private static final MethodHandle blockPositionConstructor;
+  private static final MethodHandle getBlockStateMethod;
+  private static final MethodHandle getNmsWorldMethod;
+  private static final MethodHandle setBlockMethod;
+
+  static {
+    try {
+      var lookup = MethodHandles.publicLookup();
+      var craftPackage = Bukkit.getServer().getClass().getPackage().getName();
+
+      var blockPosClass = findBlockPosClass();
+      blockPositionConstructor = lookup.findConstructor(
+          blockPosClass, MethodType.methodType(void.class, int.class, int.class, int.class)
+      ).asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+
+      var getState = Class.forName(craftPackage + ".block.data.CraftBlockData").getMethod("getState");
+      getBlockStateMethod = lookup.unreflect(getState).asType(MethodType.genericMethodType(1));
+
+      var getHandle = Class.forName(craftPackage + ".CraftWorld").getMethod("getHandle");
+      getNmsWorldMethod = lookup.unreflect(getHandle).asType(MethodType.genericMethodType(1));
+
+      var setBlock = Arrays.stream(findWorldNmsClass().getMethods())
+          .filter(m -> m.getParameterCount() == 3)
+          .filter(m -> m.getReturnType() == boolean.class)
+          .filter(m -> m.getParameterTypes()[0] == blockPosClass)
+          .filter(m -> m.getParameterTypes()[1].isAssignableFrom(getState.getReturnType()))
+          .filter(m -> m.getParameterTypes()[2] == int.class)
+          .findFirst().orElseThrow();
+
+      setBlockMethod = lookup.unreflect(setBlock).asType(MethodType.methodType(
+          boolean.class, Object.class, Object.class, Object.class, int.class
+      ));
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
     }
+  }
 
-    return blockPositionConstructor.newInstance(x, y, z);
+  @SneakyThrows
+  public static Object buildBlockPos(int x, int y, int z) {
+    return (Object) blockPositionConstructor.invokeExact(x, y, z);
   }
 
   @SneakyThrows
@@ -56,46 +88,39 @@ public class NmsUtils {
 
   @SneakyThrows
   public static Object getBlockState(BlockData blockData) {
-    if (getBlockStateMethod == null) {
-      getBlockStateMethod = blockData.getClass().getMethod("getState");
-    }
-
-    return getBlockStateMethod.invoke(blockData);
+    return (Object) getBlockStateMethod.invokeExact((Object) blockData);
   }
 
   @SneakyThrows
   public static Object getNmsWorld(World world) {
-    if (getNmsWorldMethod == null) {
-      getNmsWorldMethod = world.getClass().getMethod("getHandle");
-    }
-
-    return getNmsWorldMethod.invoke(world);
+    return (Object) getNmsWorldMethod.invokeExact((Object) world);
   }
 
   /**
    * Method used to change a world block, faster then bukkit one
    */
-  @SneakyThrows
   public static void setBlockFast(Location location, BlockData blockData) {
     if (location.getBlock().getType() == blockData.getMaterial()) {
       return;
     }
 
-    Object blockPos = buildBlockPos(location.getBlockX(), location.getBlockY(), location.getBlockZ());
-    Object blockState = getBlockState(blockData);
-    int flags = 2 | 16 | 1024;
-
-    if (setBlockMethod == null) {
-      setBlockMethod = Arrays.stream(findWorldNmsClass().getMethods())
-          .filter(m -> m.getParameterCount() == 3)
-          .filter(m -> m.getReturnType() == boolean.class)
-          .filter(m -> m.getParameterTypes()[0] == blockPos.getClass())
-          .filter(m -> m.getParameterTypes()[1].isAssignableFrom(blockState.getClass()))
-          .filter(m -> m.getParameterTypes()[2] == int.class)
-          .findFirst().orElseThrow();
-    }
+    setBlockFast(
+        getNmsWorld(location.getWorld()),
+        location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+        getBlockState(blockData)
+    );
+  }
 
-    setBlockMethod.invoke(getNmsWorld(location.getWorld()), blockPos, blockState, flags);
+  /**
+   * Change a world block without any check
+   *
+   * @param nmsWorld as returned by {@link #getNmsWorld(World)}
+   * @param blockState as returned by {@link #getBlockState(BlockData)}
+   * @return true if the block has been changed
+   */
+  @SneakyThrows
+  public static boolean setBlockFast(Object nmsWorld, int x, int y, int z, Object blockState) {
+    return (boolean) setBlockMethod.invokeExact(nmsWorld, buildBlockPos(x, y, z), blockState, SET_BLOCK_FLAGS);
   }
 
 }
@@ -0,0 +1,41 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Set blocks through the plain Bukkit API, slow but available on every server version
+ */
+
+public class BukkitPasteEngine implements PasteEngine {
+
+  @Override
+  public String getName() {
+    return "BUKKIT";
+  }
+
+  @Override
+  public boolean isSupported() {
+    return true;
+  }
+
+  @Override
+  public Object adapt(BlockData blockData) {
+    return blockData;
+  }
+
+  @Override
+  public Session openSession(World world) {
+    return new Session() {
+      @Override
+      public void setBlock(int x, int y, int z, Object block) {
+        world.getBlockAt(x, y, z).setBlockData((BlockData) block, false);
+      }
+
+      @Override
+      public void flush() {
+      }
+    };
+  }
+
+}
@@ -0,0 +1,91 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+/**
+ * Open addressing map with primitive long keys and values, avoids boxing on hot lookups
+ */
+
+public class LongHashMap {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+
+  public LongHashMap() {
+    allocate(MIN_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 32;
+    return (int) (h ^ (h >>> 16));
+  }
+
+  private int indexOf(long key) {
+    int mask = keys.length - 1;
+    int index = hash(key) & mask;
+    while (used[index]) {
+      if (keys[index] == key) {
+        return index;
+      }
+
+      index = (index + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  /**
+   * @return the value mapped to the key or the default value if the key is missing
+   */
+  public long get(long key, long defaultValue) {
+    int index = indexOf(key);
+    return index == -1 ? defaultValue : values[index];
+  }
+
+  public void put(long key, long value) {
+    int mask = keys.length - 1;
+    int index = hash(key) & mask;
+    while (used[index]) {
+      if (keys[index] == key) {
+        values[index] = value;
+        return;
+      }
+
+      index = (index + 1) & mask;
+    }
+
+    used[index] = true;
+    keys[index] = key;
+    values[index] = value;
+
+    size += 1;
+    if (size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
+
+    allocate(capacity);
+    size = 0;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import ml.empee.upgradableCells.utils.NmsUtils;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Set blocks one at a time through the NMS world, skipping physics and neighbour updates
+ */
+
+public class NmsPasteEngine implements PasteEngine {
+
+  private static final boolean supported = isNmsAvailable();
+
+  private static boolean isNmsAvailable() {
+    try {
+      Class.forName(NmsUtils.class.getName());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "NMS";
+  }
+
+  @Override
+  public boolean isSupported() {
+    return supported;
+  }
+
+  @Override
+  public Object adapt(BlockData blockData) {
+    return NmsUtils.getBlockState(blockData);
+  }
+
+  @Override
+  public Session openSession(World world) {
+    var nmsWorld = NmsUtils.getNmsWorld(world);
+
+    return new Session() {
+      @Override
+      public void setBlock(int x, int y, int z, Object block) {
+        NmsUtils.setBlockFast(nmsWorld, x, y, z, block);
+      }
+
+      @Override
+      public void flush() {
+      }
+    };
+  }
+
+}
@@ -0,0 +1,68 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import lombok.Getter;
+
+/**
+ * Fixed size array of unsigned integers packed using only the needed bits per entry
+ */
+
+public class PackedIntArray {
+
+  @Getter
+  private final int size;
+  @Getter
+  private final int bitsPerEntry;
+  private final int entriesPerLong;
+  private final long mask;
+  private final long[] data;
+
+  public PackedIntArray(int size, int bitsPerEntry) {
+    this(size, bitsPerEntry, null);
+  }
+
+  /**
+   * @param data packed entries as returned by {@link #getData()}
+   */
+  public PackedIntArray(int size, int bitsPerEntry, long[] data) {
+    if (bitsPerEntry < 1 || bitsPerEntry > 32) {
+      throw new IllegalArgumentException("Bits per entry must be between 1 and 32");
+    }
+
+    this.size = size;
+    this.bitsPerEntry = bitsPerEntry;
+    this.entriesPerLong = 64 / bitsPerEntry;
+    this.mask = (1L << bitsPerEntry) - 1;
+
+    int length = (size + entriesPerLong - 1) / entriesPerLong;
+    if (data == null) {
+      this.data = new long[length];
+    } else if (data.length != length) {
+      throw new IllegalArgumentException("Expected " + length + " longs but got " + data.length);
+    } else {
+      this.data = data;
+    }
+  }
+
+  /**
+   * @return the minimum bits needed to store the values from 0 to maxValue
+   */
+  public static int bitsFor(int maxValue) {
+    return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+  }
+
+  public int get(int index) {
+    int shift = (index % entriesPerLong) * bitsPerEntry;
+    return (int) ((data[index / entriesPerLong] >>> shift) & mask);
+  }
+
+  public void set(int index, int value) {
+    int word = index / entriesPerLong;
+    int shift = (index % entriesPerLong) * bitsPerEntry;
+    data[word] = (data[word] & ~(mask << shift)) | ((value & mask) << shift);
+  }
+
+  public long[] getData() {
+    return data;
+  }
+
+}
@@ -0,0 +1,73 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Strategy used to write the blocks of a schematic into a world
+ */
+
+public interface PasteEngine {
+
+  /**
+   * @return unique name used to select the engine from the config
+   */
+  String getName();
+
+  boolean isSupported();
+
+  /**
+   * Convert a block into the representation consumed by the sessions of this engine,
+   * the result is cached inside the schematic palette
+   */
+  Object adapt(BlockData blockData);
+
+  /**
+   * @return true if the session works better when blocks are grouped by chunk section
+   */
+  default boolean isSectionOrdered() {
+    return false;
+  }
+
+  /**
+   * @return true if the blocks reach the world only once the session is flushed
+   */
+  default boolean isBuffered() {
+    return false;
+  }
+
+  /**
+   * @return true if the blocks are still being written after the session is flushed,
+   * the measured speed of a job covers only their submission
+   */
+  default boolean isAsynchronous() {
+    return false;
+  }
+
+  Session openSession(World world);
+
+  /**
+   * Write operations of a single paste job
+   */
+  interface Session {
+
+    /**
+     * @param block as returned by {@link PasteEngine#adapt(BlockData)}
+     */
+    void setBlock(int x, int y, int z, Object block);
+
+    /**
+     * Called once every block has been set
+     */
+    void flush();
+
+    /**
+     * Called at the end of every slice of work, chunks may unload before the next slice
+     * so handles to them must not be kept
+     */
+    default void release() {
+    }
+
+  }
+
+}
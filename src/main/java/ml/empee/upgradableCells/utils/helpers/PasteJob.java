@@ -0,0 +1,169 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An in-progress paste of a schematic, executed a bit at a time by the paste service
+ */
+
+public class PasteJob {
+
+  private static final int BLOCKS_BETWEEN_CLOCK_CHECKS = 256;
+
+  private final Schematic schematic;
+  private final Location origin;
+  private final boolean clearing;
+  private int[] indexes;
+
+  @Getter
+  private PasteEngine engine = new NmsPasteEngine();
+  private PasteEngine.Session session;
+  private Object[] palette;
+
+  @Getter
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+  private int cursor;
+  private int resumedFrom;
+  private long startedAt;
+  private long workedNanos;
+
+  PasteJob(Schematic schematic, Location origin, int[] indexes, boolean clearing) {
+    this.schematic = schematic;
+    this.origin = origin.clone();
+    this.indexes = indexes;
+    this.clearing = clearing;
+  }
+
+  /**
+   * Change the engine used to write the blocks, must be called before the job starts
+   */
+  public void setEngine(PasteEngine engine) {
+    if (startedAt != 0) {
+      throw new IllegalStateException("The job " + getName() + " has already started");
+    }
+
+    this.engine = engine;
+  }
+
+  /**
+   * Skip the blocks written by a previous run of the job, must be called before the job starts
+   *
+   * @param cursor as returned by {@link #getCommittedCursor()} with the same engine
+   */
+  public void resumeFrom(int cursor) {
+    if (startedAt != 0) {
+      throw new IllegalStateException("The job " + getName() + " has already started");
+    }
+
+    this.cursor = Math.max(0, Math.min(cursor, indexes.length));
+    this.resumedFrom = this.cursor;
+  }
+
+  /**
+   * @return the number of blocks that reached the world
+   */
+  public int getCommittedCursor() {
+    if (engine.isBuffered() && !isFinished()) {
+      return resumedFrom;
+    }
+
+    return cursor;
+  }
+
+  public String getName() {
+    return schematic.getName();
+  }
+
+  /**
+   * Paste blocks until the deadline is reached or the job is finished
+   *
+   * @param deadline value of {@link System#nanoTime()} after which the job must stop
+   * @return true if the job is finished
+   */
+  public boolean pasteUntil(long deadline) {
+    long start = System.nanoTime();
+    if (startedAt == 0) {
+      startedAt = start;
+      start();
+    }
+
+    while (cursor < indexes.length && System.nanoTime() < deadline) {
+      int to = Math.min(indexes.length, cursor + BLOCKS_BETWEEN_CLOCK_CHECKS);
+      schematic.paste(
+          session, palette, origin.getBlockX(), origin.getBlockY(), origin.getBlockZ(), indexes, cursor, to
+      );
+      cursor = to;
+    }
+
+    if (isFinished()) {
+      session.flush();
+    } else {
+      session.release();
+    }
+
+    workedNanos += System.nanoTime() - start;
+    return isFinished();
+  }
+
+  private void start() {
+    palette = schematic.getPalette(engine);
+    if (clearing) {
+      palette = new Object[palette.length];
+      Arrays.fill(palette, engine.adapt(Bukkit.createBlockData(Material.AIR)));
+    }
+
+    if (engine.isSectionOrdered()) {
+      indexes = schematic.sortBySection(indexes, origin.getBlockX(), origin.getBlockY(), origin.getBlockZ());
+    }
+
+    session = engine.openSession(origin.getWorld());
+  }
+
+  public boolean isFinished() {
+    return cursor >= indexes.length;
+  }
+
+  /**
+   * @return processed blocks per second of work
+   */
+  public double getBlocksPerSecond() {
+    if (workedNanos == 0) {
+      return 0;
+    }
+
+    return (cursor - resumedFrom) / (workedNanos / 1_000_000_000D);
+  }
+
+  /**
+   * @return estimated time left, based on the speed since the job started
+   */
+  public Duration getEta() {
+    if (cursor == resumedFrom) {
+      return Duration.ZERO;
+    }
+
+    double elapsed = System.nanoTime() - startedAt;
+    double left = (indexes.length - cursor) * (elapsed / (cursor - resumedFrom));
+    return Duration.ofNanos((long) left);
+  }
+
+  /**
+   * @return completion in the range [0, 1]
+   */
+  public double getProgress() {
+    if (indexes.length == 0) {
+      return 1;
+    }
+
+    return cursor / (double) indexes.length;
+  }
+
+}
@@ -0,0 +1,43 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Block states placed by consecutive pastes sharing the same origin, tells what a paste
+ * finds in the world without reading it. Positions are relative to the paste origin
+ */
+
+public class PastedBlocks {
+
+  private final LongHashMap blocks = new LongHashMap();
+  private final Map<String, Integer> stateIds = new HashMap<>();
+  private final List<String> states = new ArrayList<>();
+
+  private static long key(int x, int y, int z) {
+    return ((long) x << 42) | ((long) y << 21) | z;
+  }
+
+  /**
+   * @return the state last pasted at the position, null if no paste placed a block there
+   */
+  @Nullable
+  public String get(int x, int y, int z) {
+    long id = blocks.get(key(x, y, z), -1);
+    return id == -1 ? null : states.get((int) id);
+  }
+
+  public void set(int x, int y, int z, String state) {
+    int id = stateIds.computeIfAbsent(state, s -> {
+      states.add(s);
+      return states.size() - 1;
+    });
+
+    blocks.put(key(x, y, z), id);
+  }
+
+}
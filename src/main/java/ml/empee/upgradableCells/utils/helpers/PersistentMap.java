@@ -0,0 +1,429 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable hash map (hash array mapped trie), updates return a new map
+ * that shares every untouched node with the previous one
+ */
+
+public final class PersistentMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  private static final int MAX_SHIFT = 30;
+
+  private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new BitmapNode(0, new Object[0]), 0);
+
+  private final BitmapNode root;
+  private final int size;
+
+  private PersistentMap(BitmapNode root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentMap<K, V> empty() {
+    return (PersistentMap<K, V>) EMPTY;
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    var entry = root.find(key, hash(key), 0);
+    return entry == null ? null : (V) entry.getValue();
+  }
+
+  /**
+   * @return a map with the given mapping added or replaced
+   */
+  public PersistentMap<K, V> plus(K key, V value) {
+    Objects.requireNonNull(key);
+
+    var change = new Change();
+    var newRoot = (BitmapNode) root.put(new Entry(key, value, hash(key)), 0, change);
+    if (newRoot == root) {
+      return this;
+    }
+
+    return new PersistentMap<>(newRoot, change.sizeChanged ? size + 1 : size);
+  }
+
+  /**
+   * @return a map without the given key
+   */
+  public PersistentMap<K, V> minus(K key) {
+    var change = new Change();
+    var newRoot = root.remove(key, hash(key), 0, change);
+    if (newRoot == root) {
+      return this;
+    }
+
+    return new PersistentMap<>((BitmapNode) newRoot, size - 1);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<Map.Entry<K, V>> iterator() {
+    return (Iterator<Map.Entry<K, V>>) (Iterator<?>) new EntryIterator(root);
+  }
+
+  public Iterable<K> keys() {
+    return () -> map(iterator(), Map.Entry::getKey);
+  }
+
+  public Iterable<V> values() {
+    return () -> map(iterator(), Map.Entry::getValue);
+  }
+
+  public Stream<K> keyStream() {
+    return StreamSupport.stream(keys().spliterator(), false);
+  }
+
+  public Stream<V> valueStream() {
+    return StreamSupport.stream(values().spliterator(), false);
+  }
+
+  private static <T, R> Iterator<R> map(Iterator<T> source, Function<T, R> mapper) {
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public R next() {
+        return mapper.apply(source.next());
+      }
+    };
+  }
+
+  private static final class Change {
+    private boolean sizeChanged;
+  }
+
+  private static final class Entry implements Map.Entry<Object, Object> {
+    private final Object key;
+    private final Object value;
+    private final int hash;
+
+    private Entry(Object key, Object value, int hash) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private abstract static class Node {
+    abstract Entry find(Object key, int hash, int shift);
+
+    abstract Node put(Entry entry, int shift, Change change);
+
+    /**
+     * @return the node without the key, null if the node became empty
+     */
+    abstract Node remove(Object key, int hash, int shift, Change change);
+
+    /**
+     * @return the only entry of the node, null if it holds anything else
+     */
+    abstract Entry singleEntry();
+
+    static Node merge(Entry first, Entry second, int shift) {
+      if (shift > MAX_SHIFT) {
+        return new CollisionNode(new Entry[] {first, second});
+      }
+
+      int firstIndex = (first.hash >>> shift) & MASK;
+      int secondIndex = (second.hash >>> shift) & MASK;
+      if (firstIndex == secondIndex) {
+        return new BitmapNode(1 << firstIndex, new Object[] {merge(first, second, shift + BITS)});
+      }
+
+      var slots = firstIndex < secondIndex ? new Object[] {first, second} : new Object[] {second, first};
+      return new BitmapNode((1 << firstIndex) | (1 << secondIndex), slots);
+    }
+  }
+
+  /**
+   * Slots are either entries or child nodes, only the bits set in the bitmap have a slot
+   */
+  private static final class BitmapNode extends Node {
+    private final int bitmap;
+    private final Object[] slots;
+
+    private BitmapNode(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    private int slotOf(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    Entry find(Object key, int hash, int shift) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+
+      var slot = slots[slotOf(bit)];
+      if (slot instanceof Node) {
+        return ((Node) slot).find(key, hash, shift + BITS);
+      }
+
+      var entry = (Entry) slot;
+      return entry.key.equals(key) ? entry : null;
+    }
+
+    @Override
+    Node put(Entry entry, int shift, Change change) {
+      int bit = 1 << ((entry.hash >>> shift) & MASK);
+      int index = slotOf(bit);
+
+      if ((bitmap & bit) == 0) {
+        var newSlots = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, newSlots, 0, index);
+        newSlots[index] = entry;
+        System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+        change.sizeChanged = true;
+        return new BitmapNode(bitmap | bit, newSlots);
+      }
+
+      var slot = slots[index];
+      Object newSlot;
+      if (slot instanceof Node) {
+        newSlot = ((Node) slot).put(entry, shift + BITS, change);
+      } else {
+        var current = (Entry) slot;
+        if (current.key.equals(entry.key)) {
+          newSlot = Objects.equals(current.value, entry.value) ? current : entry;
+        } else {
+          newSlot = merge(current, entry, shift + BITS);
+          change.sizeChanged = true;
+        }
+      }
+
+      if (newSlot == slot) {
+        return this;
+      }
+
+      var newSlots = slots.clone();
+      newSlots[index] = newSlot;
+      return new BitmapNode(bitmap, newSlots);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift, Change change) {
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+
+      int index = slotOf(bit);
+      var slot = slots[index];
+      Object newSlot;
+      if (slot instanceof Node) {
+        var child = ((Node) slot).remove(key, hash, shift + BITS, change);
+        if (child == slot) {
+          return this;
+        }
+
+        //Entries left alone in a sub-node move up, keeping the trie as shallow as possible
+        var single = child == null ? null : child.singleEntry();
+        newSlot = single != null ? single : child;
+      } else {
+        if (!((Entry) slot).key.equals(key)) {
+          return this;
+        }
+
+        newSlot = null;
+      }
+
+      change.sizeChanged = true;
+      if (newSlot != null) {
+        var newSlots = slots.clone();
+        newSlots[index] = newSlot;
+        return new BitmapNode(bitmap, newSlots);
+      }
+
+      if (shift != 0 && slots.length == 1) {
+        return null;
+      }
+
+      var newSlots = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, newSlots, 0, index);
+      System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+      return new BitmapNode(bitmap & ~bit, newSlots);
+    }
+
+    @Override
+    Entry singleEntry() {
+      return slots.length == 1 && slots[0] instanceof Entry ? (Entry) slots[0] : null;
+    }
+  }
+
+  /**
+   * Entries whose whole hash is the same
+   */
+  private static final class CollisionNode extends Node {
+    private final Entry[] entries;
+
+    private CollisionNode(Entry[] entries) {
+      this.entries = entries;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < entries.length; i++) {
+        if (entries[i].key.equals(key)) {
+          return i;
+        }
+      }
+
+      return -1;
+    }
+
+    @Override
+    Entry find(Object key, int hash, int shift) {
+      int index = indexOf(key);
+      return index == -1 ? null : entries[index];
+    }
+
+    @Override
+    Node put(Entry entry, int shift, Change change) {
+      int index = indexOf(entry.key);
+      if (index == -1) {
+        var newEntries = Arrays.copyOf(entries, entries.length + 1);
+        newEntries[entries.length] = entry;
+        change.sizeChanged = true;
+        return new CollisionNode(newEntries);
+      }
+
+      if (Objects.equals(entries[index].value, entry.value)) {
+        return this;
+      }
+
+      var newEntries = entries.clone();
+      newEntries[index] = entry;
+      return new CollisionNode(newEntries);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift, Change change) {
+      int index = indexOf(key);
+      if (index == -1) {
+        return this;
+      }
+
+      change.sizeChanged = true;
+      if (entries.length == 1) {
+        return null;
+      }
+
+      var newEntries = new Entry[entries.length - 1];
+      System.arraycopy(entries, 0, newEntries, 0, index);
+      System.arraycopy(entries, index + 1, newEntries, index, entries.length - index - 1);
+      return new CollisionNode(newEntries);
+    }
+
+    @Override
+    Entry singleEntry() {
+      return entries.length == 1 ? entries[0] : null;
+    }
+  }
+
+  /**
+   * Depth-first walk over the trie
+   */
+  private static final class EntryIterator implements Iterator<Entry> {
+    private final Deque<Object[]> slots = new ArrayDeque<>();
+    private final Deque<Integer> positions = new ArrayDeque<>();
+    private Entry next;
+
+    private EntryIterator(BitmapNode root) {
+      push(root);
+      advance();
+    }
+
+    private void push(Node node) {
+      slots.push(node instanceof BitmapNode ? ((BitmapNode) node).slots : ((CollisionNode) node).entries);
+      positions.push(0);
+    }
+
+    private void advance() {
+      next = null;
+      while (!slots.isEmpty()) {
+        var current = slots.peek();
+        int position = positions.pop();
+        if (position >= current.length) {
+          slots.pop();
+          continue;
+        }
+
+        positions.push(position + 1);
+        var slot = current[position];
+        if (slot instanceof Node) {
+          push((Node) slot);
+        } else {
+          next = (Entry) slot;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+
+      var result = next;
+      advance();
+      return result;
+    }
+  }
+
+}
@@ -1,31 +1,39 @@
 package ml.empee.upgradableCells.utils.helpers;
 
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
 import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
 import lombok.SneakyThrows;
 import ml.empee.upgradableCells.utils.Logger;
-import ml.empee.upgradableCells.utils.NmsUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.block.data.BlockData;
-import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
 
 /**
  * A WorldEdit schematic
@@ -33,12 +41,33 @@ import java.util.function.Function;
 
 public class Schematic {
 
-  private static final int DELAY_BETWEEN_PASTING = 20; //ticks
-  private final JavaPlugin plugin = JavaPlugin.getProvidingPlugin(Schematic.class);
+  private static final int CACHE_MAGIC = 0x55435343;
+  private static final int CACHE_FORMAT = 1;
+  private static final String AIR_STATE = "minecraft:air";
+
   private final File file;
-  private final Vector origin;
+  private Vector origin;
+
+  private int width;
+  private int height;
+  private int length;
+
+  /**
+   * Unique block states of the schematic, referenced by {@link #blocks}
+   */
+  private String[] paletteStates;
+  private BlockData[] palette;
+  private final Map<String, Object[]> adaptedPalettes = new HashMap<>();
 
-  private final List<Map<Vector, BlockData>> sections;
+  /**
+   * Palette index of every block inside the bounding box (x-major, then y, then z)
+   */
+  private PackedIntArray blocks;
+
+  /**
+   * Bitset over the bounding box of the non-air blocks
+   */
+  private long[] solidBlocks;
 
   @SneakyThrows
   private static ClipboardReader getReader(File file) {
@@ -50,50 +79,242 @@ public class Schematic {
     return format.getReader(new FileInputStream(file));
   }
 
+  /**
+   * Read a schematic, the parsed blocks are cached next to the file and the cache
+   * is used as long as the file and the server version don't change.
+   * <br><br>
+   * Safe to call asynchronously, {@link #adaptPalette()} must be called on the main thread
+   * before using the schematic
+   */
   public Schematic(File file) {
     this.file = file;
 
+    var cacheFile = new File(file.getParentFile(), file.getName() + ".cache");
+    var hash = hash(file);
+    if (readCache(cacheFile, hash)) {
+      Logger.debug("Loaded schematic " + file.getName() + " from cache");
+      return;
+    }
+
     try (ClipboardReader reader = getReader(file)) {
       Clipboard clipboard = reader.read();
       origin = readOrigin(clipboard);
-      sections = readSections(clipboard);
+      readBlocks(clipboard);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+
+    writeCache(cacheFile, hash);
   }
 
-  @Nullable
-  public BlockData getBlock(Vector vector) {
-    for (Map<Vector, BlockData> section : sections) {
-      var data = section.get(vector);
-      if (data != null) {
-        return data;
+  @SneakyThrows
+  private static byte[] hash(File file) {
+    var digest = MessageDigest.getInstance("SHA-256");
+    try (var input = new DigestInputStream(new FileInputStream(file), digest)) {
+      input.transferTo(OutputStream.nullOutputStream());
+    }
+
+    return digest.digest();
+  }
+
+  private boolean readCache(File cacheFile, byte[] hash) {
+    if (!cacheFile.exists()) {
+      return false;
+    }
+
+    try (var channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_FORMAT) {
+        return false;
+      }
+
+      if (!Bukkit.getBukkitVersion().equals(readString(buffer))) {
+        return false;
+      }
+
+      var cachedHash = new byte[buffer.getInt()];
+      buffer.get(cachedHash);
+      if (!Arrays.equals(hash, cachedHash)) {
+        return false;
+      }
+
+      width = buffer.getInt();
+      height = buffer.getInt();
+      length = buffer.getInt();
+      origin = new Vector(buffer.getInt(), buffer.getInt(), buffer.getInt());
+
+      paletteStates = new String[buffer.getInt()];
+      for (int i = 0; i < paletteStates.length; i++) {
+        paletteStates[i] = readString(buffer);
       }
+
+      int bitsPerEntry = buffer.getInt();
+      blocks = new PackedIntArray(width * height * length, bitsPerEntry, readLongs(buffer));
+      solidBlocks = readLongs(buffer);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      Logger.warning("Unable to read the cache of %s, parsing the schematic again", file.getName());
+      return false;
+    }
+  }
+
+  /**
+   * The cache is written to a temporary file and moved over the old one, so that a crash
+   * or another server starting at the same time never leaves a truncated cache
+   */
+  private void writeCache(File cacheFile, byte[] hash) {
+    File tempFile;
+    try {
+      tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+    } catch (IOException e) {
+      Logger.warning("Unable to write the cache of %s: %s", file.getName(), e.getMessage());
+      return;
+    }
+
+    try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      output.writeInt(CACHE_MAGIC);
+      output.writeInt(CACHE_FORMAT);
+      writeString(output, Bukkit.getBukkitVersion());
+      output.writeInt(hash.length);
+      output.write(hash);
+
+      output.writeInt(width);
+      output.writeInt(height);
+      output.writeInt(length);
+      output.writeInt(origin.getBlockX());
+      output.writeInt(origin.getBlockY());
+      output.writeInt(origin.getBlockZ());
+
+      output.writeInt(paletteStates.length);
+      for (String state : paletteStates) {
+        writeString(output, state);
+      }
+
+      output.writeInt(blocks.getBitsPerEntry());
+      writeLongs(output, blocks.getData());
+      writeLongs(output, solidBlocks);
+    } catch (IOException e) {
+      Logger.warning("Unable to write the cache of %s: %s", file.getName(), e.getMessage());
+      tempFile.delete();
+      return;
+    }
+
+    try {
+      Files.move(
+          tempFile.toPath(), cacheFile.toPath(),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING
+      );
+    } catch (IOException e) {
+      Logger.warning("Unable to write the cache of %s: %s", file.getName(), e.getMessage());
+      tempFile.delete();
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    var bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static long[] readLongs(ByteBuffer buffer) {
+    var values = new long[buffer.getInt()];
+    buffer.asLongBuffer().get(values);
+    buffer.position(buffer.position() + values.length * Long.BYTES);
+    return values;
+  }
+
+  private static void writeLongs(DataOutputStream output, long[] values) throws IOException {
+    output.writeInt(values.length);
+    for (long value : values) {
+      output.writeLong(value);
+    }
+  }
+
+  private int indexOf(int x, int y, int z) {
+    return (x * height + y) * length + z;
+  }
+
+  private boolean isInside(int x, int y, int z) {
+    return x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < length;
+  }
+
+  @Nullable
+  public BlockData getBlock(int x, int y, int z) {
+    if (!isInside(x, y, z)) {
+      return null;
     }
 
-    return null;
+    return palette[blocks.get(indexOf(x, y, z))];
   }
 
-  private List<Map<Vector, BlockData>> readSections(Clipboard clipboard) {
-    List<Map<Vector, BlockData>> sections = new ArrayList<>();
+  /**
+   * @return true if the schematic has a non-air block at the given position
+   */
+  public boolean isSolid(int x, int y, int z) {
+    if (!isInside(x, y, z)) {
+      return false;
+    }
+
+    int index = indexOf(x, y, z);
+    return (solidBlocks[index >>> 6] & (1L << index)) != 0;
+  }
 
+  private void readBlocks(Clipboard clipboard) {
     var min = clipboard.getMinimumPoint();
     var max = clipboard.getMaximumPoint();
 
-    for (int x = min.getX(); x <= max.getX(); x++) {
-      Map<Vector, BlockData> section = new HashMap<>();
+    width = max.getX() - min.getX() + 1;
+    height = max.getY() - min.getY() + 1;
+    length = max.getZ() - min.getZ() + 1;
 
+    Map<BlockState, Integer> paletteIndexes = new HashMap<>();
+    List<String> palette = new ArrayList<>();
+    int[] indexes = new int[width * height * length];
+    solidBlocks = new long[(indexes.length + 63) >>> 6];
+
+    int index = 0;
+    for (int x = min.getX(); x <= max.getX(); x++) {
       for (int y = min.getY(); y <= max.getY(); y++) {
         for (int z = min.getZ(); z <= max.getZ(); z++) {
-          BaseBlock block = clipboard.getFullBlock(BlockVector3.at(x, y, z));
-          section.put(new Vector(x - min.getX(), y - min.getY(), z - min.getZ()), BukkitAdapter.adapt(block));
+          BlockState block = clipboard.getBlock(BlockVector3.at(x, y, z));
+          Integer paletteIndex = paletteIndexes.get(block);
+          if (paletteIndex == null) {
+            paletteIndex = palette.size();
+            paletteIndexes.put(block, paletteIndex);
+            palette.add(block.getAsString());
+          }
+
+          indexes[index] = paletteIndex;
+          if (!AIR_STATE.equals(palette.get(paletteIndex))) {
+            solidBlocks[index >>> 6] |= 1L << index;
+          }
+
+          index += 1;
         }
       }
+    }
 
-      sections.add(section);
+    this.paletteStates = palette.toArray(new String[0]);
+    this.blocks = new PackedIntArray(indexes.length, PackedIntArray.bitsFor(palette.size() - 1));
+    for (int i = 0; i < indexes.length; i++) {
+      blocks.set(i, indexes[i]);
     }
+  }
 
-    return sections;
+  /**
+   * Convert the block states of the palette to bukkit block data
+   */
+  public void adaptPalette() {
+    palette = new BlockData[paletteStates.length];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = Bukkit.createBlockData(paletteStates[i]);
+    }
   }
 
   private Vector readOrigin(Clipboard clipboard) {
@@ -110,39 +331,125 @@ public class Schematic {
     return origin.clone();
   }
 
+  public int getVolume() {
+    return width * height * length;
+  }
+
+  public String getName() {
+    return file.getName();
+  }
+
   /**
-   * Paste the schematic
-   * @param mask a function that returns true if the block <b>can't</b> be pasted
+   * Compute the blocks that must be pasted over what the previous pastes left in the world,
+   * only positions occupied by the previous structure are changed so that player builds are kept
+   *
+   * @param previous the schematic of the previous level, null if nothing has been pasted yet
+   * @param pasted blocks placed by the previous pastes, updated with the blocks of this one
+   * @return indexes of the bounding box that must be pasted
    */
-  public CompletableFuture<Void> paste(Location origin, Function<Vector, Boolean> mask) {
-    Logger.debug("Starting pasting of schematic " + file.getName());
-    return pasteRecursively(origin, mask, 0, 5);
-  }
-
-  private CompletableFuture<Void> pasteRecursively(Location origin, Function<Vector, Boolean> mask, int sectionIndex, int chunkSize) {
-    CompletableFuture<Void> stage = new CompletableFuture<>();
-    Bukkit.getScheduler().runTaskLater(plugin, () -> {
-      for (int i = sectionIndex; i < sectionIndex + chunkSize; i++) {
-        if (i >= sections.size()) {
-          Logger.debug("Finished pasting schematic " + file.getName());
-          stage.complete(null);
-          return;
-        }
+  public int[] diff(@Nullable Schematic previous, PastedBlocks pasted) {
+    var indexes = new int[getVolume()];
+    int size = 0;
 
-        var section = sections.get(i);
-        section.forEach((position, block) -> {
-          if (mask.apply(position.clone())) {
-            return;
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        for (int z = 0; z < length; z++) {
+          boolean pastable = previous == null ? isSolid(x, y, z) : previous.isSolid(x, y, z);
+          if (!pastable) {
+            continue;
           }
 
-          NmsUtils.setBlockFast(origin.clone().add(position), block);
-        });
+          //The previous levels may have never placed their block here, so compare with what they pasted
+          int index = indexOf(x, y, z);
+          var state = paletteStates[blocks.get(index)];
+          if (!state.equals(pasted.get(x, y, z))) {
+            indexes[size++] = index;
+            pasted.set(x, y, z, state);
+          }
+        }
       }
+    }
+
+    return Arrays.copyOf(indexes, size);
+  }
+
+  /**
+   * Create a job that pastes the given blocks of the schematic,
+   * the job must be submitted to the paste service
+   *
+   * @param indexes indexes of the bounding box to paste
+   */
+  public PasteJob paste(Location origin, int[] indexes) {
+    return new PasteJob(this, origin, indexes, false);
+  }
 
-      pasteRecursively(origin, mask, sectionIndex + chunkSize, chunkSize).thenRun(() -> stage.complete(null));
-    }, DELAY_BETWEEN_PASTING);
+  /**
+   * Create a job that replaces the given blocks of the schematic with air
+   *
+   * @param indexes indexes of the bounding box to clear
+   */
+  public PasteJob clear(Location origin, int[] indexes) {
+    return new PasteJob(this, origin, indexes, true);
+  }
+
+  /**
+   * @return the palette converted for the given engine
+   */
+  Object[] getPalette(PasteEngine engine) {
+    return adaptedPalettes.computeIfAbsent(
+        engine.getName(), k -> Arrays.stream(palette).map(engine::adapt).toArray()
+    );
+  }
+
+  /**
+   * Paste part of the given blocks
+   *
+   * @param palette as returned by {@link #getPalette(PasteEngine)}
+   * @param indexes indexes of the bounding box to paste
+   */
+  void paste(
+      PasteEngine.Session session, Object[] palette,
+      int originX, int originY, int originZ, int[] indexes, int from, int to
+  ) {
+    for (int i = from; i < to; i++) {
+      int index = indexes[i];
+      session.setBlock(
+          originX + (index / (height * length)),
+          originY + ((index / length) % height),
+          originZ + (index % length),
+          palette[blocks.get(index)]
+      );
+    }
+  }
+
+  /**
+   * Order the indexes so that blocks of the same chunk, and then of the same section, are contiguous
+   *
+   * @return a sorted copy of the indexes
+   */
+  int[] sortBySection(int[] indexes, int originX, int originY, int originZ) {
+    int minChunkX = originX >> 4;
+    int minChunkZ = originZ >> 4;
+    int chunksZ = ((originZ + length - 1) >> 4) - minChunkZ + 1;
+
+    var keys = new long[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      int index = indexes[i];
+      int chunkX = ((originX + (index / (height * length))) >> 4) - minChunkX;
+      int sectionY = ((originY + ((index / length) % height)) >> 4) & 0xFF;
+      int chunkZ = ((originZ + (index % length)) >> 4) - minChunkZ;
+
+      long section = ((long) chunkX * chunksZ + chunkZ) * 256 + sectionY;
+      keys[i] = (section << 32) | index;
+    }
+
+    Arrays.sort(keys);
+    var sorted = new int[indexes.length];
+    for (int i = 0; i < keys.length; i++) {
+      sorted[i] = (int) keys[i];
+    }
 
-    return stage;
+    return sorted;
   }
 
 }
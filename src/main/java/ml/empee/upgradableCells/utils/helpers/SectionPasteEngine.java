@@ -0,0 +1,40 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import ml.empee.upgradableCells.utils.NmsUtils;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Write blocks straight into the chunk sections through a {@link SectionWriter}
+ */
+
+public class SectionPasteEngine implements PasteEngine {
+
+  private final NmsPasteEngine nmsEngine = new NmsPasteEngine();
+
+  @Override
+  public String getName() {
+    return "SECTION";
+  }
+
+  @Override
+  public boolean isSupported() {
+    return nmsEngine.isSupported() && SectionWriter.isSupported();
+  }
+
+  @Override
+  public Object adapt(BlockData blockData) {
+    return NmsUtils.getBlockState(blockData);
+  }
+
+  @Override
+  public boolean isSectionOrdered() {
+    return true;
+  }
+
+  @Override
+  public Session openSession(World world) {
+    return new SectionWriter(world);
+  }
+
+}
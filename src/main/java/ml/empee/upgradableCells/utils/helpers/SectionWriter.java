@@ -0,0 +1,213 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import lombok.SneakyThrows;
+import ml.empee.upgradableCells.utils.Logger;
+import ml.empee.upgradableCells.utils.NmsUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Write blocks straight into the chunk sections, skipping the per-block world logic.
+ * <br><br>
+ * Blocks must be written grouped by chunk, lighting is recomputed and the chunk is sent again
+ * once per chunk, when the writer moves to another chunk or is flushed. Blocks with a
+ * tile entity, blocks replacing one and blocks inside empty sections go through
+ * {@link NmsUtils#setBlockFast(Object, int, int, int, Object)}
+ */
+
+public class SectionWriter implements PasteEngine.Session {
+
+  private static MethodHandle getChunkHandleMethod;
+  private static MethodHandle getSectionsMethod;
+  private static MethodHandle setSectionBlockMethod;
+  private static MethodHandle getSectionBlockMethod;
+  private static MethodHandle initLightingMethod;
+  private static MethodHandle markDirtyMethod;
+  private static MethodHandle getBlockMethod;
+  private static Class<?> tileEntityInterface;
+  private static final boolean supported = init();
+
+  private final World world;
+  private final Object nmsWorld;
+  private final Map<Object, Boolean> tileEntities = new IdentityHashMap<>();
+
+  private Object chunk;
+  private Object[] sections;
+  private int chunkX;
+  private int chunkZ;
+
+  /**
+   * True if the current chunk has been written but not relit yet, its handle may have been released
+   */
+  private boolean dirty;
+
+  public SectionWriter(World world) {
+    if (!supported) {
+      throw new IllegalStateException("Direct section writes aren't supported by this server");
+    }
+
+    this.world = world;
+    this.nmsWorld = NmsUtils.getNmsWorld(world);
+  }
+
+  /**
+   * The chunk internals are looked up by signature, only servers where chunks still
+   * relight themselves (1.13) are supported
+   */
+  private static boolean init() {
+    try {
+      var lookup = MethodHandles.publicLookup();
+      var craftPackage = Bukkit.getServer().getClass().getPackage().getName();
+
+      var getHandle = Class.forName(craftPackage + ".CraftChunk").getMethod("getHandle");
+      var chunkClass = getHandle.getReturnType();
+      getChunkHandleMethod = lookup.unreflect(getHandle).asType(MethodType.genericMethodType(1));
+
+      var getSections = Arrays.stream(chunkClass.getMethods())
+          .filter(m -> m.getParameterCount() == 0)
+          .filter(m -> m.getReturnType().isArray())
+          .filter(m -> m.getReturnType().getComponentType().getSimpleName().equals("ChunkSection"))
+          .findFirst().orElseThrow();
+      getSectionsMethod = lookup.unreflect(getSections).asType(
+          MethodType.methodType(Object[].class, Object.class)
+      );
+
+      var getState = Class.forName(craftPackage + ".block.data.CraftBlockData").getMethod("getState");
+      var blockStateClass = getState.getReturnType();
+      var setSectionBlock = getSections.getReturnType().getComponentType().getMethod(
+          "setType", int.class, int.class, int.class, blockStateClass
+      );
+      setSectionBlockMethod = lookup.unreflect(setSectionBlock).asType(MethodType.methodType(
+          void.class, Object.class, int.class, int.class, int.class, Object.class
+      ));
+
+      var getSectionBlock = getSections.getReturnType().getComponentType().getMethod(
+          "getType", int.class, int.class, int.class
+      );
+      getSectionBlockMethod = lookup.unreflect(getSectionBlock).asType(MethodType.methodType(
+          Object.class, Object.class, int.class, int.class, int.class
+      ));
+
+      initLightingMethod = findNoArgsMethod(lookup, chunkClass, "initLighting");
+      markDirtyMethod = findNoArgsMethod(lookup, chunkClass, "markDirty");
+
+      var getBlock = blockStateClass.getMethod("getBlock");
+      getBlockMethod = lookup.unreflect(getBlock).asType(MethodType.genericMethodType(1));
+      tileEntityInterface = Class.forName(getBlock.getReturnType().getPackage().getName() + ".ITileEntity");
+
+      return true;
+    } catch (Exception e) {
+      Logger.debug("Direct section writes unavailable: %s", e);
+      return false;
+    }
+  }
+
+  private static MethodHandle findNoArgsMethod(MethodHandles.Lookup lookup, Class<?> clazz, String name)
+      throws ReflectiveOperationException {
+    Method method = clazz.getMethod(name);
+    return lookup.unreflect(method).asType(MethodType.methodType(void.class, Object.class));
+  }
+
+  public static boolean isSupported() {
+    return supported;
+  }
+
+  /**
+   * @param blockState as returned by {@link NmsUtils#getBlockState(org.bukkit.block.data.BlockData)}
+   */
+  @Override
+  @SneakyThrows
+  public void setBlock(int x, int y, int z, Object blockState) {
+    if (y < 0 || y >= world.getMaxHeight()) {
+      return;
+    }
+
+    if (!dirty || chunkX != x >> 4 || chunkZ != z >> 4) {
+      flush();
+      chunkX = x >> 4;
+      chunkZ = z >> 4;
+      dirty = true;
+    }
+
+    if (chunk == null) {
+      loadChunk();
+    }
+
+    var section = sections[y >> 4];
+    if (section == null || hasTileEntity(blockState)) {
+      NmsUtils.setBlockFast(nmsWorld, x, y, z, blockState);
+      return;
+    }
+
+    //The world removes the tile entity of the replaced block, the section alone would leave it behind
+    var current = (Object) getSectionBlockMethod.invokeExact(section, x & 15, y & 15, z & 15);
+    if (hasTileEntity(current)) {
+      NmsUtils.setBlockFast(nmsWorld, x, y, z, blockState);
+      return;
+    }
+
+    setSectionBlockMethod.invokeExact(section, x & 15, y & 15, z & 15, blockState);
+  }
+
+  @SneakyThrows
+  private void loadChunk() {
+    this.chunk = (Object) getChunkHandleMethod.invokeExact((Object) world.getChunkAt(chunkX, chunkZ));
+    this.sections = (Object[]) getSectionsMethod.invokeExact(chunk);
+
+    //Marked before writing so that a world save catches the blocks written so far
+    markDirtyMethod.invokeExact(chunk);
+  }
+
+  @SneakyThrows
+  private boolean hasTileEntity(Object blockState) {
+    var cached = tileEntities.get(blockState);
+    if (cached == null) {
+      var block = (Object) getBlockMethod.invokeExact(blockState);
+      cached = tileEntityInterface.isInstance(block);
+      tileEntities.put(blockState, cached);
+    }
+
+    return cached;
+  }
+
+  /**
+   * Relight and send again the chunk that has been written
+   */
+  @Override
+  @SneakyThrows
+  public void flush() {
+    if (!dirty) {
+      return;
+    }
+
+    if (chunk == null) {
+      loadChunk();
+    }
+
+    initLightingMethod.invokeExact(chunk);
+    markDirtyMethod.invokeExact(chunk);
+    world.refreshChunk(chunkX, chunkZ);
+
+    dirty = false;
+    release();
+  }
+
+  /**
+   * The chunk may unload before the next slice, writes to a stale handle would be lost.
+   * The chunk is relit only once the writer is done with it
+   */
+  @Override
+  public void release() {
+    chunk = null;
+    sections = null;
+  }
+
+}
@@ -0,0 +1,67 @@
+package ml.empee.upgradableCells.utils.helpers;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
+import lombok.SneakyThrows;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Set blocks through a WorldEdit edit session, when FastAsyncWorldEdit is installed
+ * the blocks are queued and written by its own engine once the session is flushed
+ */
+
+public class WorldEditPasteEngine implements PasteEngine {
+
+  public static boolean isFastAsyncWorldEditInstalled() {
+    return Bukkit.getPluginManager().getPlugin("FastAsyncWorldEdit") != null;
+  }
+
+  @Override
+  public String getName() {
+    return "WORLDEDIT";
+  }
+
+  @Override
+  public boolean isSupported() {
+    return Bukkit.getPluginManager().getPlugin("WorldEdit") != null || isFastAsyncWorldEditInstalled();
+  }
+
+  @Override
+  public Object adapt(BlockData blockData) {
+    return BukkitAdapter.adapt(blockData);
+  }
+
+  @Override
+  public boolean isBuffered() {
+    return true;
+  }
+
+  @Override
+  public boolean isAsynchronous() {
+    return isFastAsyncWorldEditInstalled();
+  }
+
+  @Override
+  public Session openSession(World world) {
+    EditSession editSession = WorldEdit.getInstance().newEditSession(BukkitAdapter.adapt(world));
+
+    return new Session() {
+      @Override
+      @SneakyThrows
+      public void setBlock(int x, int y, int z, Object block) {
+        editSession.setBlock(BlockVector3.at(x, y, z), (BlockState) block);
+      }
+
+      @Override
+      public void flush() {
+        editSession.close();
+      }
+    };
+  }
+
+}